@@ -11,6 +11,9 @@ import android.widget.TextView;
 
 import com.puzzletak.library.PuzzleTakProtectorLib;
 import com.puzzletak.library.EmulatorSuperCheckCallback;
+import com.puzzletak.library.MultiInstanceDetector;
+import com.puzzletak.library.ProtectorCallback;
+import com.puzzletak.library.PuzzleTakProtectorAsync;
 import com.puzzletak.library.SecurityCheckUtil;
 import com.puzzletak.library.VirtualApkCheckUtil;
 import com.puzzletak.puzzletakprotector.R;
@@ -41,35 +44,37 @@ public class MainActivity extends AppCompatActivity
 //                forTest();
 //                break;
 //            case R.id.checkByPrivateFilePath:
-                TextView v1 = findViewById(R.id.v1);
-                v1.setText(VirtualApkCheckUtil.getSingleInstance().checkByPrivateFilePath(this, null) ?
-                        "privatePath-NO" : "privatePath-OK");
-//                break;
-//            case R.id.checkByOriginApkPackageName:
-                TextView v2 = findViewById(R.id.v2);
-                v2.setText(VirtualApkCheckUtil.getSingleInstance().checkByOriginApkPackageName(this, null) ?
-                        "packageName-NO" : "packageName-OK");
-//                break;
-//            case R.id.checkByMultiApkPackageName:
-                TextView v3 = findViewById(R.id.v3);
-                v3.setText(VirtualApkCheckUtil.getSingleInstance().checkByMultiApkPackageName(null) ?
-                        "maps-NO" : "maps-OK");
-//                break;
-//            case R.id.checkByHasSameUid:
-                TextView v4 = findViewById(R.id.v4);
-                v4.setText(VirtualApkCheckUtil.getSingleInstance().checkByHasSameUid(null) ?
-                        "uid-NO" : "uid-OK");
+                final TextView v1 = findViewById(R.id.v1);
+                final TextView v2 = findViewById(R.id.v2);
+                final TextView v3 = findViewById(R.id.v3);
+                final TextView v4 = findViewById(R.id.v4);
+                final TextView v6 = findViewById(R.id.v6);
+                // The detection does package manager and /proc I/O: run it off the main thread
+                // and show the report once it is delivered back on it.
+                PuzzleTakProtectorAsync.checkIsMultiInstance(getApplicationContext(), getPackageName(), false)
+                        .setCallback(PuzzleTakProtectorAsync.mainThreadExecutor(),
+                                new ProtectorCallback<MultiInstanceDetector.Report>() {
+                                    @Override
+                                    public void onResult(MultiInstanceDetector.Report report) {
+                                        v1.setText(report.isSuspect(MultiInstanceDetector.CHECK_PRIVATE_FILE_PATH) ? "privatePath-NO" : "privatePath-OK");
+                                        v2.setText(report.isSuspect(MultiInstanceDetector.CHECK_ORIGIN_APK_PACKAGE_NAME) ? "packageName-NO" : "packageName-OK");
+                                        v3.setText(report.isSuspect(MultiInstanceDetector.CHECK_MULTI_APK_PACKAGE_NAME) ? "maps-NO" : "maps-OK");
+                                        v4.setText(report.isSuspect(MultiInstanceDetector.CHECK_SAME_UID) ? "uid-NO" : "uid-OK");
+                                        v6.setText(report.isSuspect(MultiInstanceDetector.CHECK_LOCAL_SERVER_SOCKET) ? "LocalServerSocket-NO" : "LocalServerSocket-OK");
+                                        Log.d("PUZZLETAK", "multiInstance: " + report);
+                                    }
+
+                                    @Override
+                                    public void onError(Throwable error) {
+                                        Log.w("PUZZLETAK", "multiInstance failed", error);
+                                    }
+                                });
 //                break;
 //            case R.id.checkByPortListening:
                 VirtualApkCheckUtil.getSingleInstance().checkByPortListening("port", null);
                 TextView v5 = findViewById(R.id.v5);
                 v5.setText("port listening");
 //                break;
-//            case R.id.checkByCreateLocalServerSocket:
-                TextView v6 = findViewById(R.id.v6);
-                v6.setText(PuzzleTakProtectorLib.checkIsRunningInVirtualApk(getPackageName(), null) ?
-                        "LocalServerSocket-NO" : "LocalServerSocket-OK");
-//                break;
 //            case R.id.checkRoot:
                 TextView r1 = findViewById(R.id.r1);
                 r1.setText(PuzzleTakProtectorLib.checkIsRoot() ?
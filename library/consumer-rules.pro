@@ -0,0 +1,10 @@
+# antitrace.so looks NativeWatchdog up by name and calls back into it.
+-keep class com.puzzletak.library.NativeWatchdog {
+    native <methods>;
+    private static void onTracerDetected(int);
+}
+
+# ProbeBatch's native method is registered by name from JNI_OnLoad.
+-keep class com.puzzletak.library.ProbeBatch {
+    native <methods>;
+}
@@ -0,0 +1,187 @@
+package com.puzzletak.library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handle of one caller on an asynchronous check.
+ * <p>
+ * Identical checks requested while one is already running share the same underlying work;
+ * every caller still gets its own handle. Cancelling a handle only detaches that caller,
+ * and the shared work is cancelled once no caller is waiting for it anymore.
+ */
+public final class CheckRequest<T> implements Future<T> {
+
+    private final Shared<T> shared;
+    private Executor callbackExecutor;
+    private ProtectorCallback<? super T> callback;
+    private boolean cancelled;
+
+    private CheckRequest(Shared<T> shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Delivers the result to {@code callback} on {@code executor}; if the check has already
+     * finished the delivery is scheduled right away.
+     *
+     * @param executor thread to deliver on, e.g. {@link PuzzleTakProtectorAsync#mainThreadExecutor()}
+     * @return this request
+     */
+    public CheckRequest<T> setCallback(Executor executor, ProtectorCallback<? super T> callback) {
+        if (executor == null)
+            throw new IllegalArgumentException("executor must not be null");
+        boolean deliverNow;
+        synchronized (shared) {
+            if (cancelled) return this;
+            this.callbackExecutor = executor;
+            this.callback = callback;
+            deliverNow = shared.isDone();
+        }
+        if (deliverNow) deliver();
+        return this;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (shared) {
+            if (cancelled || shared.isDone()) return false;
+            cancelled = true;
+            callback = null;
+            shared.subscribers.remove(this);
+            if (!shared.subscribers.isEmpty()) return true;
+        }
+        // Nobody is waiting for the shared work anymore.
+        shared.cancel(mayInterruptIfRunning);
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        synchronized (shared) {
+            return cancelled;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        synchronized (shared) {
+            return cancelled || shared.isDone();
+        }
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        if (isCancelled()) throw new CancellationException();
+        return shared.get();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (isCancelled()) throw new CancellationException();
+        return shared.get(timeout, unit);
+    }
+
+    private void deliver() {
+        final ProtectorCallback<? super T> target;
+        final Executor executor;
+        synchronized (shared) {
+            if (cancelled || callback == null) return;
+            target = callback;
+            executor = callbackExecutor;
+            callback = null;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                try {
+                    result = shared.get();
+                } catch (CancellationException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    target.onError(e.getCause());
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                target.onResult(result);
+            }
+        });
+    }
+
+    /**
+     * Returns a handle on the check registered under {@code key}, starting it on {@code executor}
+     * only if no identical check is in flight. If {@code executor} rejects the work, the request
+     * and every request that joined it complete with the {@link RejectedExecutionException}.
+     */
+    static <T> CheckRequest<T> obtain(ConcurrentMap<String, Shared<?>> inFlight, String key,
+                                      Callable<T> work, Executor executor) {
+        while (true) {
+            Shared<T> created = new Shared<>(inFlight, key, work);
+            @SuppressWarnings("unchecked")
+            Shared<T> existing = (Shared<T>) inFlight.putIfAbsent(key, created);
+            Shared<T> shared = existing == null ? created : existing;
+            CheckRequest<T> request = new CheckRequest<>(shared);
+            synchronized (shared) {
+                if (shared.isCancelled()) {
+                    // Lost a race with the last subscriber cancelling; start over.
+                    inFlight.remove(key, shared);
+                    continue;
+                }
+                shared.subscribers.add(request);
+            }
+            if (existing == null) {
+                try {
+                    executor.execute(created);
+                } catch (RejectedExecutionException e) {
+                    inFlight.remove(key, created);
+                    created.fail(e);
+                }
+            }
+            return request;
+        }
+    }
+
+    /**
+     * The work shared by every request for the same key.
+     */
+    static final class Shared<T> extends FutureTask<T> {
+        private final ConcurrentMap<String, Shared<?>> inFlight;
+        private final String key;
+        final List<CheckRequest<T>> subscribers = new ArrayList<>(1);
+
+        Shared(ConcurrentMap<String, Shared<?>> inFlight, String key, Callable<T> work) {
+            super(work);
+            this.inFlight = inFlight;
+            this.key = key;
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        protected void done() {
+            inFlight.remove(key, this);
+            List<CheckRequest<T>> targets;
+            synchronized (this) {
+                targets = new ArrayList<>(subscribers);
+            }
+            for (CheckRequest<T> request : targets) {
+                request.deliver();
+            }
+        }
+    }
+}
@@ -7,9 +7,16 @@ public class CheckResult {
 
     public int result;
     public String value;
+    public SignatureMatcher.Signature signature;//命中的特征, may be null
 
     public CheckResult(int result, String value) {
         this.result = result;
         this.value = value;
     }
+
+    public CheckResult(int result, String value, SignatureMatcher.Signature signature) {
+        this.result = result;
+        this.value = value;
+        this.signature = signature;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.puzzletak.library;
+
+/**
+ * Outcome of a shell command run through {@link CommandRunner}.
+ */
+public class CommandResult {
+    public static final int EXIT_NOT_STARTED = -1;
+
+    public final int exitCode;
+    public final String stdout;
+    public final String stderr;
+    public final long durationMillis;
+    public final boolean timedOut;
+    public final boolean truncated;
+
+    public CommandResult(int exitCode, String stdout, String stderr,
+                         long durationMillis, boolean timedOut, boolean truncated) {
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.durationMillis = durationMillis;
+        this.timedOut = timedOut;
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return true if the command ran to completion and exited with 0
+     */
+    public boolean isSuccess() {
+        return exitCode == 0 && !timedOut;
+    }
+}
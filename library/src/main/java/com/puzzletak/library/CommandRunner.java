@@ -0,0 +1,196 @@
+package com.puzzletak.library;
+
+import android.os.SystemClock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs shell commands with bounded time and memory.
+ * <p>
+ * stdout and stderr are drained concurrently while the process is still running, so a chatty
+ * command can never block on a full pipe. Output is collected into pooled growable buffers and
+ * only decoded as UTF-8 once complete, so multibyte characters are never split.
+ */
+public final class CommandRunner {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_MAX_OUTPUT_BYTES = 1024 * 1024;
+
+    private static final int BUFFER_CAPACITY = 8 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final long EXIT_POLL_MILLIS = 10;
+    private static final ArrayDeque<ProcFs.Buffer> BUFFER_POOL = new ArrayDeque<>();
+
+    private CommandRunner() {
+    }
+
+    public static CommandResult run(String command) {
+        return run(command, DEFAULT_TIMEOUT_MILLIS, DEFAULT_MAX_OUTPUT_BYTES);
+    }
+
+    /**
+     * @param command        command line passed to {@code sh -c}
+     * @param timeoutMillis  the call returns and the process is destroyed once this much time has passed
+     * @param maxOutputBytes bytes kept per stream; anything beyond is drained and discarded
+     */
+    public static CommandResult run(String command, long timeoutMillis, int maxOutputBytes) {
+        long start = SystemClock.elapsedRealtime();
+        final Process process;
+        try {
+            process = new ProcessBuilder("sh", "-c", command).start();
+        } catch (IOException e) {
+            return new CommandResult(CommandResult.EXIT_NOT_STARTED, null, null,
+                    SystemClock.elapsedRealtime() - start, false, false);
+        }
+
+        final ProcFs.Buffer out = obtainBuffer();
+        final ProcFs.Buffer err = obtainBuffer();
+        final int cap = maxOutputBytes;
+        closeQuietly(process.getOutputStream());
+        Future<Boolean> outDrain = submitDrain(process.getInputStream(), out, cap);
+        Future<Boolean> errDrain = submitDrain(process.getErrorStream(), err, cap);
+
+        boolean timedOut = false;
+        boolean truncated = false;
+        int exitCode = CommandResult.EXIT_NOT_STARTED;
+        try {
+            long deadline = start + timeoutMillis;
+            truncated = outDrain.get(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+            truncated |= errDrain.get(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+            exitCode = waitFor(process, deadline);
+        } catch (TimeoutException e) {
+            timedOut = true;
+        } catch (ExecutionException e) {
+            // drain() does not throw; nothing more to collect
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (timedOut || exitCode == CommandResult.EXIT_NOT_STARTED) {
+            // Grandchildren of sh may keep the pipes open after it is killed, so the caller
+            // does not wait for the drains; the buffers are left to them and not recycled.
+            process.destroy();
+            outDrain.cancel(true);
+            errDrain.cancel(true);
+            return new CommandResult(exitCode, snapshot(out), snapshot(err),
+                    SystemClock.elapsedRealtime() - start, timedOut, truncated);
+        }
+
+        String stdout = out.toString();
+        String stderr = err.toString();
+        recycleBuffer(out);
+        recycleBuffer(err);
+        process.destroy();
+        return new CommandResult(exitCode, stdout, stderr,
+                SystemClock.elapsedRealtime() - start, false, truncated);
+    }
+
+    /**
+     * Waits for the process to exit. A command that closed or redirected its output reaches EOF
+     * while still running, so the drains alone do not bound the wait. Process.waitFor(long, TimeUnit)
+     * is API 26+, hence polling exitValue().
+     */
+    private static int waitFor(Process process, long deadline) throws InterruptedException, TimeoutException {
+        while (true) {
+            try {
+                return process.exitValue();
+            } catch (IllegalThreadStateException e) {
+                // Still running.
+            }
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (remaining <= 0) throw new TimeoutException();
+            Thread.sleep(Math.min(remaining, EXIT_POLL_MILLIS));
+        }
+    }
+
+    private static Future<Boolean> submitDrain(final InputStream in, final ProcFs.Buffer buffer, final int cap) {
+        return ProtectorExecutors.io().submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return drain(in, buffer, cap);
+            }
+        });
+    }
+
+    // Copies whatever a still running drain has collected so far.
+    private static String snapshot(ProcFs.Buffer buffer) {
+        synchronized (buffer) {
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Reads the stream to EOF, keeping at most {@code cap} bytes.
+     *
+     * @return true if some output was discarded
+     */
+    private static boolean drain(InputStream in, ProcFs.Buffer buffer, int cap) {
+        boolean truncated = false;
+        byte[] scratch = null;
+        try {
+            while (true) {
+                int read;
+                if (buffer.length < cap) {
+                    byte[] data;
+                    int offset;
+                    synchronized (buffer) {
+                        if (buffer.length == buffer.data.length) {
+                            buffer.ensureCapacity(Math.min(cap, buffer.length * 2));
+                        }
+                        data = buffer.data;
+                        offset = buffer.length;
+                    }
+                    read = in.read(data, offset, Math.min(data.length, cap) - offset);
+                    if (read > 0) {
+                        synchronized (buffer) {
+                            buffer.length += read;
+                        }
+                    }
+                } else {
+                    if (scratch == null) scratch = new byte[BUFFER_CAPACITY];
+                    read = in.read(scratch);
+                    if (read > 0) truncated = true;
+                }
+                if (read < 0) break;
+            }
+        } catch (IOException e) {
+            // The pipe is closed when the process is destroyed.
+        } finally {
+            closeQuietly(in);
+        }
+        return truncated;
+    }
+
+    private static ProcFs.Buffer obtainBuffer() {
+        synchronized (BUFFER_POOL) {
+            ProcFs.Buffer buffer = BUFFER_POOL.pollFirst();
+            if (buffer != null) return buffer;
+        }
+        return new ProcFs.Buffer(BUFFER_CAPACITY);
+    }
+
+    private static void recycleBuffer(ProcFs.Buffer buffer) {
+        buffer.length = 0;
+        // Do not let one huge output pin memory for the rest of the process lifetime.
+        if (buffer.data.length > DEFAULT_MAX_OUTPUT_BYTES) return;
+        synchronized (BUFFER_POOL) {
+            if (BUFFER_POOL.size() < MAX_POOLED_BUFFERS) BUFFER_POOL.addFirst(buffer);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -1,11 +1,5 @@
 package com.puzzletak.library;
 
-import android.annotation.SuppressLint;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.IOException;
-
 /**
  * Project Name:PuzzleTakProtector
  * Package Name:com.puzzletak.library
@@ -23,83 +17,19 @@ public class CommandUtil {
         return SingletonHolder.INSTANCE;
     }
 
-    @SuppressLint("PrivateApi")
     public String getProperty(String propName) {
-        String value = null;
-        Object roSecureObj;
-        try {
-            roSecureObj = Class.forName("android.os.SystemProperties")
-                    .getMethod("get", String.class)
-                    .invoke(null, propName);
-            if (roSecureObj != null) value = (String) roSecureObj;
-        } catch (Exception e) {
-            value = null;
-        } finally {
-            return value;
-        }
+        return PropertyReader.get(propName);
     }
 
+    /**
+     * Runs a shell command and returns its stdout.
+     * See {@link CommandRunner} for exit code, stderr, timeout and size limits.
+     *
+     * @return the command output, or null if the shell could not be started
+     */
     public String exec(String command) {
-        BufferedOutputStream bufferedOutputStream = null;
-        BufferedInputStream bufferedInputStream = null;
-        Process process = null;
-        try {
-            process = Runtime.getRuntime().exec("sh");
-            bufferedOutputStream = new BufferedOutputStream(process.getOutputStream());
-
-            bufferedInputStream = new BufferedInputStream(process.getInputStream());
-            bufferedOutputStream.write(command.getBytes());
-            bufferedOutputStream.write('\n');
-            bufferedOutputStream.flush();
-            bufferedOutputStream.close();
-
-            process.waitFor();
-
-            String outputStr = getStrFromBufferInputSteam(bufferedInputStream);
-            return outputStr;
-        } catch (Exception e) {
-            return null;
-        } finally {
-            if (bufferedOutputStream != null) {
-                try {
-                    bufferedOutputStream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (bufferedInputStream != null) {
-                try {
-                    bufferedInputStream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (process != null) {
-                process.destroy();
-            }
-        }
-    }
-
-    private static String getStrFromBufferInputSteam(BufferedInputStream bufferedInputStream) {
-        if (null == bufferedInputStream) {
-            return "";
-        }
-        int BUFFER_SIZE = 512;
-        byte[] buffer = new byte[BUFFER_SIZE];
-        StringBuilder result = new StringBuilder();
-        try {
-            while (true) {
-                int read = bufferedInputStream.read(buffer);
-                if (read > 0) {
-                    result.append(new String(buffer, 0, read));
-                }
-                if (read < BUFFER_SIZE) {
-                    break;
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return result.toString();
+        CommandResult result = CommandRunner.run(command);
+        if (result.exitCode == CommandResult.EXIT_NOT_STARTED) return null;
+        return result.stdout;
     }
 }
@@ -0,0 +1,102 @@
+package com.puzzletak.library;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.text.TextUtils;
+
+import static android.content.Context.SENSOR_SERVICE;
+
+/**
+ * Process-wide cache of the device facts that cannot change while the process is alive:
+ * the build/product system properties, the sensor count and the PackageManager feature flags.
+ * <p>
+ * The fingerprint is immutable and built lazily on first use, so repeated emulator checks
+ * only pay for a volatile read. Signals that can change at runtime (installed user apps,
+ * cgroup membership) are deliberately not part of it and are read on every scan.
+ * Made with ❤ by puzzletak
+ */
+public final class DeviceFingerprint {
+
+    private static volatile DeviceFingerprint cached;
+
+    // Raw property values, null when unset or empty.
+    public final String hardware;
+    public final String host;
+    public final String flavor;
+    public final String model;
+    public final String manufacturer;
+    public final String board;
+    public final String platform;
+    public final String baseBand;
+
+    public final int sensorNumber;
+    public final boolean supportCamera;
+    public final boolean supportCameraFlash;
+    public final boolean supportBluetooth;
+
+    private DeviceFingerprint(Context context) {
+        String[] properties = PropertyReader.getProperties(
+                "ro.hardware",
+                "ro.build.host",
+                "ro.build.flavor",
+                "ro.product.model",
+                "ro.product.manufacturer",
+                "ro.product.board",
+                "ro.board.platform",
+                "gsm.version.baseband");
+        hardware = emptyToNull(properties[0]);
+        host = emptyToNull(properties[1]);
+        flavor = emptyToNull(properties[2]);
+        model = emptyToNull(properties[3]);
+        manufacturer = emptyToNull(properties[4]);
+        board = emptyToNull(properties[5]);
+        platform = emptyToNull(properties[6]);
+        baseBand = emptyToNull(properties[7]);
+
+        SensorManager sm = (SensorManager) context.getSystemService(SENSOR_SERVICE);
+        sensorNumber = sm == null ? 0 : sm.getSensorList(Sensor.TYPE_ALL).size();
+
+        PackageManager pm = context.getPackageManager();
+        supportCamera = pm.hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY);
+        supportCameraFlash = pm.hasSystemFeature(PackageManager.FEATURE_CAMERA_FLASH);
+        supportBluetooth = pm.hasSystemFeature(PackageManager.FEATURE_BLUETOOTH);
+    }
+
+    /**
+     * Returns the cached fingerprint, building it on the first call.
+     *
+     * @param context any context, only used for the first build
+     */
+    public static DeviceFingerprint get(Context context) {
+        DeviceFingerprint fingerprint = cached;
+        if (fingerprint == null) {
+            synchronized (DeviceFingerprint.class) {
+                fingerprint = cached;
+                if (fingerprint == null) {
+                    fingerprint = new DeviceFingerprint(context);
+                    cached = fingerprint;
+                }
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Drops the cached fingerprint so the next {@link #get(Context)} reads everything again.
+     * <p>
+     * Only needed when a fact was captured before the system finished publishing it, e.g.
+     * {@code gsm.version.baseband} is set by the radio service and may still be empty if the
+     * first check ran right after boot.
+     */
+    public static void invalidate() {
+        cached = null;
+    }
+
+    private static String emptyToNull(String property) {
+        return TextUtils.isEmpty(property) ? null : property;
+    }
+}
+
+// Made with ❤ by puzzletak
@@ -0,0 +1,145 @@
+package com.puzzletak.library;
+
+/**
+ * Every signal collected by a single emulator scan.
+ * <p>
+ * The snapshot is produced once by {@link EmulatorSuperCheckUtil#scan(android.content.Context)}
+ * and all the readSysProperty* entry points are views over it, so no property,
+ * sensor, feature flag or procfs read is performed twice per check.
+ * Made with ❤ by puzzletak
+ */
+public class EmulatorSnapshot {
+
+    /** Value of an int signal that could not be collected before the scan deadline. */
+    public static final int UNKNOWN = ScoringModel.UNKNOWN;
+
+    // Bits of missingSignals, set when a parallel scan hit its deadline first.
+    public static final int SIGNAL_FINGERPRINT = 1;
+    public static final int SIGNAL_USER_APPS = 1 << 1;
+    public static final int SIGNAL_CGROUP = 1 << 2;
+
+    // Raw property values as returned by SystemProperties, null when unset.
+    public final String hardwareProperty;
+    public final String hostProperty;
+    public final String flavorProperty;
+    public final String modelProperty;
+    public final String manufacturerProperty;
+    public final String boardProperty;
+    public final String platformProperty;
+    public final String baseBandProperty;
+
+    // Classification of each property value.
+    public final CheckResult hardware;
+    public final CheckResult host;
+    public final CheckResult flavor;
+    public final CheckResult model;
+    public final CheckResult manufacturer;
+    public final CheckResult board;
+    public final CheckResult platform;
+    public final CheckResult baseBand;
+
+    public final int sensorNumber;
+    public final int userAppNumber;
+    public final boolean supportCamera;
+    public final boolean supportCameraFlash;
+    public final boolean supportBluetooth;
+    public final CheckResult cgroup;
+
+    public final int missingSignals;
+    public final int suspectCount;
+
+    private final ScoringModel scoringModel;
+    private final int[] signalValues;
+
+    EmulatorSnapshot(String hardwareProperty, CheckResult hardware,
+                     String hostProperty, CheckResult host,
+                     String flavorProperty, CheckResult flavor,
+                     String modelProperty, CheckResult model,
+                     String manufacturerProperty, CheckResult manufacturer,
+                     String boardProperty, CheckResult board,
+                     String platformProperty, CheckResult platform,
+                     String baseBandProperty, CheckResult baseBand,
+                     int sensorNumber, int userAppNumber,
+                     boolean supportCamera, boolean supportCameraFlash, boolean supportBluetooth,
+                     CheckResult cgroup, int missingSignals, ScoringModel scoringModel) {
+        this.hardwareProperty = hardwareProperty;
+        this.hardware = hardware;
+        this.hostProperty = hostProperty;
+        this.host = host;
+        this.flavorProperty = flavorProperty;
+        this.flavor = flavor;
+        this.modelProperty = modelProperty;
+        this.model = model;
+        this.manufacturerProperty = manufacturerProperty;
+        this.manufacturer = manufacturer;
+        this.boardProperty = boardProperty;
+        this.board = board;
+        this.platformProperty = platformProperty;
+        this.platform = platform;
+        this.baseBandProperty = baseBandProperty;
+        this.baseBand = baseBand;
+        this.sensorNumber = sensorNumber;
+        this.userAppNumber = userAppNumber;
+        this.supportCamera = supportCamera;
+        this.supportCameraFlash = supportCameraFlash;
+        this.supportBluetooth = supportBluetooth;
+        this.cgroup = cgroup;
+        this.missingSignals = missingSignals;
+        this.scoringModel = scoringModel;
+        this.signalValues = buildSignalValues();
+        this.suspectCount = scoringModel.score(signalValues);
+    }
+
+    /**
+     * @return true if the accumulated suspicion is high enough to consider the device an emulator
+     */
+    public boolean isEmulator() {
+        return scoringModel.isEmulator(suspectCount);
+    }
+
+    /**
+     * @param signal one of the {@code ScoringModel.SIGNAL_*} ids
+     * @return true if the scoring model considers this signal's value suspicious
+     */
+    public boolean isSuspicious(int signal) {
+        return scoringModel.isSuspicious(signal, signalValues[signal]);
+    }
+
+    /**
+     * @return true if every signal was collected; otherwise the score only covers what finished in time
+     */
+    public boolean isComplete() {
+        return missingSignals == 0;
+    }
+
+    private int[] buildSignalValues() {
+        int[] values = new int[ScoringModel.SIGNAL_COUNT];
+        values[ScoringModel.SIGNAL_HARDWARE] = hardware.result;
+        values[ScoringModel.SIGNAL_HOST] = host.result;
+        values[ScoringModel.SIGNAL_FLAVOR] = flavor.result;
+        values[ScoringModel.SIGNAL_MODEL] = model.result;
+        values[ScoringModel.SIGNAL_MANUFACTURER] = manufacturer.result;
+        values[ScoringModel.SIGNAL_BOARD] = board.result;
+        values[ScoringModel.SIGNAL_PLATFORM] = platform.result;
+        values[ScoringModel.SIGNAL_BASEBAND] = baseBand.result;
+        values[ScoringModel.SIGNAL_SENSOR_COUNT] = sensorNumber;
+        values[ScoringModel.SIGNAL_USER_APP_COUNT] = userAppNumber;
+        values[ScoringModel.SIGNAL_CAMERA] = supportCamera ? 1 : 0;
+        values[ScoringModel.SIGNAL_CAMERA_FLASH] = supportCameraFlash ? 1 : 0;
+        values[ScoringModel.SIGNAL_BLUETOOTH] = supportBluetooth ? 1 : 0;
+        values[ScoringModel.SIGNAL_CGROUP] = cgroup.result;
+        if ((missingSignals & SIGNAL_FINGERPRINT) != 0) {
+            for (int signal = ScoringModel.SIGNAL_HARDWARE; signal <= ScoringModel.SIGNAL_BASEBAND; signal++) {
+                values[signal] = UNKNOWN;
+            }
+            values[ScoringModel.SIGNAL_SENSOR_COUNT] = UNKNOWN;
+            values[ScoringModel.SIGNAL_CAMERA] = UNKNOWN;
+            values[ScoringModel.SIGNAL_CAMERA_FLASH] = UNKNOWN;
+            values[ScoringModel.SIGNAL_BLUETOOTH] = UNKNOWN;
+        }
+        if ((missingSignals & SIGNAL_CGROUP) != 0) values[ScoringModel.SIGNAL_CGROUP] = UNKNOWN;
+        return values;
+    }
+}
+
+// Made with ❤ by puzzletak
@@ -1,11 +1,10 @@
 package com.puzzletak.library;
 
 import android.content.Context;
-import android.content.pm.PackageManager;
 import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.os.Build;
-import android.text.TextUtils;
+import android.os.SystemClock;
 import android.util.Pair;
 
 import static android.content.Context.SENSOR_SERVICE;
@@ -14,9 +13,16 @@ import static com.puzzletak.library.CheckResult.RESULT_MAYBE_EMULATOR;
 import static com.puzzletak.library.CheckResult.RESULT_UNKNOWN;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Utility class for detecting if the app is running on an emulator.
@@ -38,684 +44,441 @@ public class EmulatorSuperCheckUtil {
         return SingletonHolder.INSTANCE;
     }
 
+    private volatile ScoringModel scoringModel = ScoringModel.getDefault();
+
     /**
-     * Main method to detect emulator based on various parameters.
+     * Replaces the weights and thresholds used by every emulator check.
      *
-     * @param context  Application context
-     * @param callback Callback to report findings
-     * @return true if emulator detected, false otherwise
+     * @param model e.g. {@link ScoringModel#fromAsset(Context, String)}, or null to restore the built-in model
      */
-    public boolean readSysProperty(Context context, EmulatorSuperCheckCallback callback) {
-        if (context == null)
-            throw new IllegalArgumentException("context must not be null");
-
-        int suspectCount = 0;
-
-        // Check hardware name
-        CheckResult hardwareResult = checkFeaturesByHardware();
-        switch (hardwareResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("hardware -= " + hardwareResult.value);
-                return true;
-        }
-
-        // Check host name
-        CheckResult hostResult = checkFeaturesByHost();
-        switch (hostResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("host = " + hostResult.value);
-                return true;
-        }
-
-        // Check build flavor
-        CheckResult flavorResult = checkFeaturesByFlavor();
-        switch (flavorResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("flavor = " + flavorResult.value);
-                return true;
-        }
-
-        // Check device model
-        CheckResult modelResult = checkFeaturesByModel();
-        switch (modelResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("model = " + modelResult.value);
-                return true;
-        }
+    public void setScoringModel(ScoringModel model) {
+        scoringModel = model == null ? ScoringModel.getDefault() : model;
+    }
 
-        // Check manufacturer
-        CheckResult manufacturerResult = checkFeaturesByManufacturer();
-        switch (manufacturerResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null)
-                    callback.findEmulator("manufacturer = " + manufacturerResult.value);
-                return true;
-        }
+    public ScoringModel getScoringModel() {
+        return scoringModel;
+    }
 
-        // Check board name
-        CheckResult boardResult = checkFeaturesByBoard();
-        switch (boardResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("board = " + boardResult.value);
-                return true;
-        }
+    private volatile SignatureMatcher signatureMatcher;
 
-        // Check platform name
-        CheckResult platformResult = checkFeaturesByPlatform();
-        switch (platformResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                ++suspectCount;
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("platform = " + platformResult.value);
-                return true;
-        }
+    /**
+     * Replaces the property signatures used by every emulator check.
+     *
+     * @param matcher signatures keyed by the property {@code ScoringModel.SIGNAL_*} ids,
+     *                or null to use the properties section of the installed {@link SignaturePack}
+     */
+    public void setSignatureMatcher(SignatureMatcher matcher) {
+        signatureMatcher = matcher;
+    }
 
-        // Check baseband information
-        CheckResult baseBandResult = checkFeaturesByBaseBand();
-        switch (baseBandResult.result) {
-            case RESULT_MAYBE_EMULATOR:
-                suspectCount += 4; // Baseband info being null strongly indicates an emulator.
-                break;
-            case RESULT_EMULATOR:
-                if (callback != null) callback.findEmulator("baseBand = " + baseBandResult.value);
-                return true;
-        }
+    public SignatureMatcher getSignatureMatcher() {
+        SignatureMatcher matcher = signatureMatcher;
+        return matcher != null ? matcher : SignaturePack.current().matcher(SignaturePack.SECTION_PROPERTIES);
+    }
 
-        // Check sensor count
-        int sensorNumber = getSensorNumber(context);
-        if (sensorNumber <= 3) ++suspectCount;
+    /**
+     * Collects every emulator signal exactly once.
+     * <p>
+     * This is the single scan engine behind all readSysProperty* entry points; each of them
+     * is only a different view over the returned snapshot.
+     *
+     * @param context Application context
+     * @return the collected signals and their suspicion score
+     */
+    public EmulatorSnapshot scan(Context context) {
+        if (context == null)
+            throw new IllegalArgumentException("context must not be null");
 
-        // Check number of installed third-party apps
-        int userAppNumber = getUserAppNumber();
-        if (userAppNumber <= 1) ++suspectCount;
+        return assemble(DeviceFingerprint.get(context), getUserAppNumber(context),
+                checkFeaturesByCgroup(), 0);
+    }
 
-        // Check if camera flash is supported
-//        boolean supportCameraFlash = supportCameraFlash(context);
-//        if (!supportCameraFlash) ++suspectCount;
+    /**
+     * Same signals as {@link #scan(Context)}, but the independent ones (device fingerprint,
+     * installed user apps, cgroup) are evaluated concurrently on a small bounded pool.
+     * <p>
+     * Signals that have not finished when {@code timeoutMillis} expires are skipped and flagged in
+     * {@link EmulatorSnapshot#missingSignals}; the snapshot is scored on what did finish, so
+     * the call never takes much longer than the deadline.
+     *
+     * @param context       Application context
+     * @param timeoutMillis overall deadline for the whole scan
+     */
+    public EmulatorSnapshot scanParallel(final Context context, long timeoutMillis) {
+        if (context == null)
+            throw new IllegalArgumentException("context must not be null");
 
-        // Check if camera is supported
-        boolean supportCamera = supportCamera(context);
-        if (!supportCamera) ++suspectCount;
+        long deadline = SystemClock.elapsedRealtime() + timeoutMillis;
+        Future<DeviceFingerprint> fingerprintTask = submitSignal(new Callable<DeviceFingerprint>() {
+            @Override
+            public DeviceFingerprint call() {
+                return DeviceFingerprint.get(context);
+            }
+        });
+        Future<Integer> userAppsTask = submitSignal(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return getUserAppNumber(context);
+            }
+        });
+        Future<CheckResult> cgroupTask = submitSignal(new Callable<CheckResult>() {
+            @Override
+            public CheckResult call() {
+                return checkFeaturesByCgroup();
+            }
+        });
+
+        int missing = 0;
+        DeviceFingerprint fingerprint = awaitSignal(fingerprintTask, deadline);
+        if (fingerprint == null) missing |= EmulatorSnapshot.SIGNAL_FINGERPRINT;
+        Integer userApps = awaitSignal(userAppsTask, deadline);
+        if (userApps == null) missing |= EmulatorSnapshot.SIGNAL_USER_APPS;
+        CheckResult cgroup = awaitSignal(cgroupTask, deadline);
+        if (cgroup == null) missing |= EmulatorSnapshot.SIGNAL_CGROUP;
+
+        return assemble(fingerprint,
+                userApps == null ? EmulatorSnapshot.UNKNOWN : userApps,
+                cgroup == null ? new CheckResult(RESULT_UNKNOWN, null) : cgroup,
+                missing);
+    }
 
-        // Check if Bluetooth is supported
-        boolean supportBluetooth = supportBluetooth(context);
-        if (!supportBluetooth) ++suspectCount;
+    /**
+     * Parallel variant of {@link #readSysPropertyPTResult(Context, EmulatorSuperCheckCallback)}.
+     *
+     * @param timeoutMillis overall deadline, see {@link #scanParallel(Context, long)}
+     * @return true if emulator detected from the signals that finished in time
+     */
+    public boolean readSysPropertyParallel(Context context, long timeoutMillis, EmulatorSuperCheckCallback callback) {
+        EmulatorSnapshot snapshot = scanParallel(context, timeoutMillis);
+
+        int definite = findDefiniteMatch(snapshot);
+        if (definite >= 0) {
+            if (callback != null)
+                callback.findEmulator(PROPERTY_LABELS[definite] + propertyResults(snapshot)[definite].value);
+            return true;
+        }
 
-        // Check light sensor presence
-//        boolean hasLightSensor = hasLightSensor(context);
-//        if (!hasLightSensor) ++suspectCount;
+        if (callback != null) {
+            callback.checkEmulator(snapshot.suspectCount);
+        }
+        return snapshot.isEmulator();
+    }
 
-        // Check cgroup information
-        CheckResult cgroupResult = checkFeaturesByCgroup();
-        if (cgroupResult.result == RESULT_MAYBE_EMULATOR) ++suspectCount;
+    /**
+     * Main method to detect emulator based on various parameters.
+     *
+     * @param context  Application context
+     * @param callback Callback to report findings
+     * @return true if emulator detected, false otherwise
+     */
+    public boolean readSysProperty(Context context, EmulatorSuperCheckCallback callback) {
+        EmulatorSnapshot snapshot = scan(context);
+
+        // A definite match on any property decides the verdict on its own.
+        int definite = findDefiniteMatch(snapshot);
+        if (definite >= 0) {
+            if (callback != null)
+                callback.findEmulator(PROPERTY_LABELS[definite] + propertyResults(snapshot)[definite].value);
+            return true;
+        }
 
         // Provide callback with detailed results
         if (callback != null) {
             StringBuffer stringBuffer = new StringBuffer("Test start")
-                    .append("\r\n").append("hardware = ").append(hardwareResult.value)
-                    .append("\r\n").append("host = ").append(hostResult.value)
-                    .append("\r\n").append("flavor = ").append(flavorResult.value)
-                    .append("\r\n").append("model = ").append(modelResult.value)
-                    .append("\r\n").append("manufacturer = ").append(manufacturerResult.value)
-                    .append("\r\n").append("board = ").append(boardResult.value)
-                    .append("\r\n").append("platform = ").append(platformResult.value)
-                    .append("\r\n").append("baseBand = ").append(baseBandResult.value)
-                    .append("\r\n").append("sensorNumber = ").append(sensorNumber)
-                    .append("\r\n").append("userAppNumber = ").append(userAppNumber)
-                    .append("\r\n").append("supportCamera = ").append(supportCamera)
+                    .append("\r\n").append("hardware = ").append(snapshot.hardware.value)
+                    .append("\r\n").append("host = ").append(snapshot.host.value)
+                    .append("\r\n").append("flavor = ").append(snapshot.flavor.value)
+                    .append("\r\n").append("model = ").append(snapshot.model.value)
+                    .append("\r\n").append("manufacturer = ").append(snapshot.manufacturer.value)
+                    .append("\r\n").append("board = ").append(snapshot.board.value)
+                    .append("\r\n").append("platform = ").append(snapshot.platform.value)
+                    .append("\r\n").append("baseBand = ").append(snapshot.baseBand.value)
+                    .append("\r\n").append("sensorNumber = ").append(snapshot.sensorNumber)
+                    .append("\r\n").append("userAppNumber = ").append(snapshot.userAppNumber)
+                    .append("\r\n").append("supportCamera = ").append(snapshot.supportCamera)
                     .append("\r\n").append("supportCameraFlash = ").append(1)
-                    .append("\r\n").append("supportBluetooth = ").append(supportBluetooth)
+                    .append("\r\n").append("supportBluetooth = ").append(snapshot.supportBluetooth)
                     .append("\r\n").append("hasLightSensor = ").append(1)
-                    .append("\r\n").append("cgroupResult = ").append(cgroupResult.value)
-                    .append("\r\n").append("suspectCount = ").append(suspectCount);
+                    .append("\r\n").append("cgroupResult = ").append(snapshot.cgroup.value)
+                    .append("\r\n").append("suspectCount = ").append(snapshot.suspectCount);
             callback.findEmulator(stringBuffer.toString());
-            callback.checkEmulator(suspectCount);
+            callback.checkEmulator(snapshot.suspectCount);
         }
 
         // If suspicion count is greater than 3, consider it an emulator
-        return suspectCount > 3;
+        return snapshot.isEmulator();
     }
 
 
-    public void readSysPropertyPTDetailed(Context context, EmulatorDetailsCallback callback) {
+    /**
+     * Early-exit variant of {@link #readSysProperty(Context, EmulatorSuperCheckCallback)} with the same verdict.
+     * <p>
+     * Rules of the current {@link ScoringModel} are evaluated cheapest first (cached properties, feature flags,
+     * sensors, cgroup, installed user apps) and evaluation stops as soon as the remaining rules can no longer
+     * change the verdict in either direction, so the cgroup read and the app count are usually skipped.
+     *
+     * @param context  Application context
+     * @param callback receives the score reached when the verdict was decided
+     * @return true if emulator detected, false otherwise
+     */
+    public boolean readSysPropertyFast(Context context, EmulatorSuperCheckCallback callback) {
         if (context == null)
             throw new IllegalArgumentException("context must not be null");
 
-        List<Map<String, Object>> results = new ArrayList<>();
-
-        CheckResult hardwareResult = checkFeaturesByHardware();
-        boolean hardwareSuspicious = hardwareResult.result == 0;
-        results.add(new CheckItemResult("Hardware", hardwareSuspicious,checkFeaturesByHardwarePT()).toMap());
-
-        CheckResult hostResult = checkFeaturesByHost();
-        boolean hostSuspicious = hostResult.result == 0;
-        results.add(new CheckItemResult("Host", hostSuspicious,checkFeaturesByHostST()).toMap());
-
-        CheckResult flavorResult = checkFeaturesByFlavor();
-        boolean flavorSuspicious = flavorResult.result == 0;
-        results.add(new CheckItemResult("Flavor", flavorSuspicious,checkFeaturesByFlavorST()).toMap());
-
-        CheckResult modelResult = checkFeaturesByModel();
-        boolean modelSuspicious = modelResult.result == 0;
-        results.add(new CheckItemResult("Model", modelSuspicious,checkFeaturesByModelST()).toMap());
-
-        CheckResult manufacturerResult = checkFeaturesByManufacturer();
-        boolean manufacturerSuspicious = manufacturerResult.result == 0;
-        results.add(new CheckItemResult("Manufacturer", manufacturerSuspicious,checkFeaturesByManufacturerST()).toMap());
-
-        CheckResult boardResult = checkFeaturesByBoard();
-        boolean boardSuspicious = boardResult.result == 0;
-        results.add(new CheckItemResult("Board", boardSuspicious,checkFeaturesByBoardST()).toMap());
-
-        CheckResult platformResult = checkFeaturesByPlatform();
-        boolean platformSuspicious = platformResult.result == 0;
-        results.add(new CheckItemResult("Platform", platformSuspicious,checkFeaturesByPlatformST()).toMap());
-
-        CheckResult baseBandResult = checkFeaturesByBaseBand();
-        boolean basebandSuspicious = baseBandResult.result == 0;
-        results.add(new CheckItemResult("BaseBand", basebandSuspicious,checkFeaturesByBaseBandST()).toMap());
-
-        int sensorNumber = getSensorNumber(context);
-        boolean sensorSuspicious = sensorNumber <= 3;
-        results.add(new CheckItemResult("Sensors ≤ 3", sensorSuspicious,sensorNumber+"").toMap());
-
-        int userAppNumber = getUserAppNumber();
-        boolean userAppsSuspicious = userAppNumber <= 2;
-        results.add(new CheckItemResult("UserApps ≤ 1", userAppsSuspicious,userAppNumber+"").toMap());
-
-        boolean supportCameraFlash = supportCameraFlash(context);
-        boolean flashSuspicious = !supportCameraFlash;
-        results.add(new CheckItemResult("No Camera Flash", flashSuspicious,supportCameraFlashST(context)+"").toMap());
-
-        boolean supportCamera = supportCamera(context);
-        boolean cameraSuspicious = !supportCamera;
-        results.add(new CheckItemResult("No Camera", cameraSuspicious,supportCameraST(context)+"").toMap());
-
-        boolean supportBluetooth = supportBluetooth(context);
-        boolean bluetoothSuspicious = !supportBluetooth;
-        results.add(new CheckItemResult("No Bluetooth", bluetoothSuspicious,supportBluetoothST(context)+"").toMap());
-
-        CheckResult cgroupResult = checkFeaturesByCgroup();
-        boolean cgroupSuspicious = cgroupResult.result == 0;
-        results.add(new CheckItemResult("CGroup", cgroupSuspicious,checkFeaturesByCgroupST()).toMap());
-
-        if (callback != null) {
-            callback.detailsEmulator(results);
-        }
-
+        ScoringModel model = scoringModel;
+        int score = model.scoreUntilDecided(new LazySignals(context, model));
+        if (callback != null) callback.checkEmulator(score);
+        return model.isEmulator(score);
     }
 
-
-    public int readSysPropertyPT(Context context, EmulatorSuperCheckCallback callback) {
-        if (context == null)
-            throw new IllegalArgumentException("context must not be null");
-
-        int suspectCount = 0;
-
-        // Check hardware name
-        CheckResult hardwareResult = checkFeaturesByHardware();
-        if (hardwareResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check host name
-        CheckResult hostResult = checkFeaturesByHost();
-        if (hostResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
+    /**
+     * Collects each signal the first time the scoring model asks for it.
+     */
+    private final class LazySignals implements ScoringModel.SignalReader {
+        private static final int NOT_READ = Integer.MIN_VALUE;
+
+        private final Context context;
+        private final ScoringModel model;
+        private final int[] values = new int[ScoringModel.SIGNAL_COUNT];
+        private DeviceFingerprint fingerprint;
+
+        LazySignals(Context context, ScoringModel model) {
+            this.context = context;
+            this.model = model;
+            Arrays.fill(values, NOT_READ);
         }
 
-        // Check build flavor
-        CheckResult flavorResult = checkFeaturesByFlavor();
-        if (flavorResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
+        @Override
+        public int read(int signal) {
+            if (values[signal] == NOT_READ) values[signal] = collect(signal);
+            return values[signal];
         }
 
-        // Check device model
-        CheckResult modelResult = checkFeaturesByModel();
-        if (modelResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
+        private int collect(int signal) {
+            switch (signal) {
+                case ScoringModel.SIGNAL_HARDWARE:
+                    return checkProperty(ScoringModel.SIGNAL_HARDWARE, fingerprint().hardware).result;
+                case ScoringModel.SIGNAL_HOST:
+                    return checkProperty(ScoringModel.SIGNAL_HOST, fingerprint().host).result;
+                case ScoringModel.SIGNAL_FLAVOR:
+                    return checkProperty(ScoringModel.SIGNAL_FLAVOR, fingerprint().flavor).result;
+                case ScoringModel.SIGNAL_MODEL:
+                    return checkProperty(ScoringModel.SIGNAL_MODEL, fingerprint().model).result;
+                case ScoringModel.SIGNAL_MANUFACTURER:
+                    return checkProperty(ScoringModel.SIGNAL_MANUFACTURER, fingerprint().manufacturer).result;
+                case ScoringModel.SIGNAL_BOARD:
+                    return checkProperty(ScoringModel.SIGNAL_BOARD, fingerprint().board).result;
+                case ScoringModel.SIGNAL_PLATFORM:
+                    return checkProperty(ScoringModel.SIGNAL_PLATFORM, fingerprint().platform).result;
+                case ScoringModel.SIGNAL_BASEBAND:
+                    return checkProperty(ScoringModel.SIGNAL_BASEBAND, fingerprint().baseBand).result;
+                case ScoringModel.SIGNAL_SENSOR_COUNT:
+                    return fingerprint().sensorNumber;
+                case ScoringModel.SIGNAL_CAMERA:
+                    return fingerprint().supportCamera ? 1 : 0;
+                case ScoringModel.SIGNAL_CAMERA_FLASH:
+                    return fingerprint().supportCameraFlash ? 1 : 0;
+                case ScoringModel.SIGNAL_BLUETOOTH:
+                    return fingerprint().supportBluetooth ? 1 : 0;
+                case ScoringModel.SIGNAL_CGROUP:
+                    return checkFeaturesByCgroup().result;
+                case ScoringModel.SIGNAL_USER_APP_COUNT:
+                    return countUserAppsForScoring(context, model);
+                default:
+                    return ScoringModel.UNKNOWN;
+            }
         }
 
-        // Check manufacturer
-        CheckResult manufacturerResult = checkFeaturesByManufacturer();
-        if (manufacturerResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
+        private DeviceFingerprint fingerprint() {
+            if (fingerprint == null) fingerprint = DeviceFingerprint.get(context);
+            return fingerprint;
         }
+    }
 
-        // Check board name
-        CheckResult boardResult = checkFeaturesByBoard();
-        if (boardResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
+    public void readSysPropertyPTDetailed(Context context, EmulatorDetailsCallback callback) {
+        EmulatorSnapshot snapshot = scan(context);
 
-        // Check platform name
-        CheckResult platformResult = checkFeaturesByPlatform();
-        if (platformResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        results.add(new CheckItemResult("Hardware",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_HARDWARE), snapshot.hardwareProperty).toMap());
+        results.add(new CheckItemResult("Host",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_HOST), snapshot.hostProperty).toMap());
+        results.add(new CheckItemResult("Flavor",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_FLAVOR), snapshot.flavorProperty).toMap());
+        results.add(new CheckItemResult("Model",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_MODEL), snapshot.modelProperty).toMap());
+        results.add(new CheckItemResult("Manufacturer",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_MANUFACTURER), snapshot.manufacturerProperty).toMap());
+        results.add(new CheckItemResult("Board",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_BOARD), snapshot.boardProperty).toMap());
+        results.add(new CheckItemResult("Platform",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_PLATFORM), snapshot.platformProperty).toMap());
+        results.add(new CheckItemResult("BaseBand",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_BASEBAND), snapshot.baseBandProperty).toMap());
+        results.add(new CheckItemResult("Sensors ≤ 3",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_SENSOR_COUNT), snapshot.sensorNumber + "").toMap());
+        results.add(new CheckItemResult("UserApps ≤ 1",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_USER_APP_COUNT), snapshot.userAppNumber + "").toMap());
+        // Reported but not scored: the default model has no camera flash rule.
+        results.add(new CheckItemResult("No Camera Flash",
+                !snapshot.supportCameraFlash, snapshot.supportCameraFlash + "").toMap());
+        results.add(new CheckItemResult("No Camera",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_CAMERA), snapshot.supportCamera + "").toMap());
+        results.add(new CheckItemResult("No Bluetooth",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_BLUETOOTH), snapshot.supportBluetooth + "").toMap());
+        results.add(new CheckItemResult("CGroup",
+                snapshot.isSuspicious(ScoringModel.SIGNAL_CGROUP), snapshot.cgroup.value).toMap());
 
-        // Check baseband information
-        CheckResult baseBandResult = checkFeaturesByBaseBand();
-        if (baseBandResult.result == RESULT_MAYBE_EMULATOR) {
-            suspectCount += 4; // Baseband info being null strongly indicates an emulator.
+        if (callback != null) {
+            callback.detailsEmulator(results);
         }
 
-        // Check sensor count
-        int sensorNumber = getSensorNumber(context);
-        if (sensorNumber <= 3) ++suspectCount;
-
-        // Check number of installed third-party apps
-        int userAppNumber = getUserAppNumber();
-        if (sensorNumber <= 1) ++suspectCount;
-
-        // Check if camera flash is supported
-//        boolean supportCameraFlash = supportCameraFlash(context);
-//        if (!supportCameraFlash) ++suspectCount;
-
-        // Check if camera is supported
-        boolean supportCamera = supportCamera(context);
-        if (!supportCamera) ++suspectCount;
-
-        // Check if Bluetooth is supported
-        boolean supportBluetooth = supportBluetooth(context);
-        if (!supportBluetooth) ++suspectCount;
+    }
 
-        // Check light sensor presence
-//        boolean hasLightSensor = hasLightSensor(context);
-//        if (!hasLightSensor) ++suspectCount;
 
-        // Check cgroup information
-        CheckResult cgroupResult = checkFeaturesByCgroup();
-        if (cgroupResult.result == RESULT_MAYBE_EMULATOR) ++suspectCount;
+    public int readSysPropertyPT(Context context, EmulatorSuperCheckCallback callback) {
+        EmulatorSnapshot snapshot = scan(context);
 
         // Provide callback with detailed results
         if (callback != null) {
-            callback.checkEmulator(suspectCount);
+            callback.checkEmulator(snapshot.suspectCount);
         }
 
-        // If suspicion count is greater than 3, consider it an emulator
-        return suspectCount;
+        return snapshot.suspectCount;
     }
-    public boolean readSysPropertyPTResult(Context context, EmulatorSuperCheckCallback callback) {
-        if (context == null)
-            throw new IllegalArgumentException("context must not be null");
-
-        int suspectCount = 0;
-
-        // Check hardware name
-        CheckResult hardwareResult = checkFeaturesByHardware();
-        if (hardwareResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
 
-        // Check host name
-        CheckResult hostResult = checkFeaturesByHost();
-        if (hostResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check build flavor
-        CheckResult flavorResult = checkFeaturesByFlavor();
-        if (flavorResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check device model
-        CheckResult modelResult = checkFeaturesByModel();
-        if (modelResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check manufacturer
-        CheckResult manufacturerResult = checkFeaturesByManufacturer();
-        if (manufacturerResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check board name
-        CheckResult boardResult = checkFeaturesByBoard();
-        if (boardResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check platform name
-        CheckResult platformResult = checkFeaturesByPlatform();
-        if (platformResult.result == RESULT_MAYBE_EMULATOR) {
-            ++suspectCount;
-        }
-
-        // Check baseband information
-        CheckResult baseBandResult = checkFeaturesByBaseBand();
-        if (baseBandResult.result == RESULT_MAYBE_EMULATOR) {
-            suspectCount += 4; // Baseband info being null strongly indicates an emulator.
-        }
-
-        // Check sensor count
-        int sensorNumber = getSensorNumber(context);
-        if (sensorNumber <= 3) ++suspectCount;
-
-        // Check number of installed third-party apps
-        int userAppNumber = getUserAppNumber();
-        if (sensorNumber <= 1) ++suspectCount;
-
-        // Check if camera flash is supported
-//        boolean supportCameraFlash = supportCameraFlash(context);
-//        if (!supportCameraFlash) ++suspectCount;
-
-        // Check if camera is supported
-        boolean supportCamera = supportCamera(context);
-        if (!supportCamera) ++suspectCount;
-
-        // Check if Bluetooth is supported
-        boolean supportBluetooth = supportBluetooth(context);
-        if (!supportBluetooth) ++suspectCount;
-
-        // Check light sensor presence
-//        boolean hasLightSensor = hasLightSensor(context);
-//        if (!hasLightSensor) ++suspectCount;
-
-        // Check cgroup information
-        CheckResult cgroupResult = checkFeaturesByCgroup();
-        if (cgroupResult.result == RESULT_MAYBE_EMULATOR) ++suspectCount;
+    public boolean readSysPropertyPTResult(Context context, EmulatorSuperCheckCallback callback) {
+        EmulatorSnapshot snapshot = scan(context);
 
         // Provide callback with detailed results
         if (callback != null) {
             Map<String, Object> emulatorInfo = new HashMap<>();
-            emulatorInfo.put("hardware", hardwareResult.value);
-            emulatorInfo.put("host", hostResult.value);
-            emulatorInfo.put("flavor", flavorResult.value);
-            emulatorInfo.put("model", modelResult.value);
-            emulatorInfo.put("manufacturer", manufacturerResult.value);
-            emulatorInfo.put("board", boardResult.value);
-            emulatorInfo.put("platform", platformResult.value);
-            emulatorInfo.put("baseBand", baseBandResult.value);
-            emulatorInfo.put("sensorNumber", sensorNumber);
-            emulatorInfo.put("userAppNumber", userAppNumber);
-            emulatorInfo.put("supportCamera", supportCamera);
-//            emulatorInfo.put("supportCameraFlash", supportCameraFlash);
-            emulatorInfo.put("supportBluetooth", supportBluetooth);
-//            emulatorInfo.put("hasLightSensor", hasLightSensor);
-            emulatorInfo.put("cgroupResult", cgroupResult.value);
-            emulatorInfo.put("suspectCount", suspectCount);
-
-// Call the callback with the map
+            emulatorInfo.put("hardware", snapshot.hardware.value);
+            emulatorInfo.put("host", snapshot.host.value);
+            emulatorInfo.put("flavor", snapshot.flavor.value);
+            emulatorInfo.put("model", snapshot.model.value);
+            emulatorInfo.put("manufacturer", snapshot.manufacturer.value);
+            emulatorInfo.put("board", snapshot.board.value);
+            emulatorInfo.put("platform", snapshot.platform.value);
+            emulatorInfo.put("baseBand", snapshot.baseBand.value);
+            emulatorInfo.put("sensorNumber", snapshot.sensorNumber);
+            emulatorInfo.put("userAppNumber", snapshot.userAppNumber);
+            emulatorInfo.put("supportCamera", snapshot.supportCamera);
+            emulatorInfo.put("supportBluetooth", snapshot.supportBluetooth);
+            emulatorInfo.put("cgroupResult", snapshot.cgroup.value);
+            emulatorInfo.put("suspectCount", snapshot.suspectCount);
+
+            // Call the callback with the map
             callback.detailsEmulator(emulatorInfo);
-
         }
 
         // If suspicion count is greater than 3, consider it an emulator
-        return suspectCount > 3;
+        return snapshot.isEmulator();
     }
 
-    // Additional helper methods follow, providing specific checks (e.g., hardware, flavor, sensors, etc.).
-    // Each method is documented inline.
-
-    // Method implementations like getUserAppNumber, supportCamera, hasLightSensor, etc., are already self-explanatory.
-
-    private int getUserAppNum(String userApps) {
-        if (TextUtils.isEmpty(userApps)) return 0;
+    private static final String[] PROPERTY_LABELS = {"hardware -= ", "host = ", "flavor = ", "model = ",
+            "manufacturer = ", "board = ", "platform = ", "baseBand = "};
 
-        String[] result = userApps.split("package:");
-
-        return result.length;
+    private static CheckResult[] propertyResults(EmulatorSnapshot snapshot) {
+        return new CheckResult[]{snapshot.hardware, snapshot.host, snapshot.flavor, snapshot.model,
+                snapshot.manufacturer, snapshot.board, snapshot.platform, snapshot.baseBand};
     }
 
-    private String getProperty(String propName) {
-        String property = CommandUtil.getSingleInstance().getProperty(propName);
-        return TextUtils.isEmpty(property) ? null : property;
-    }
-
-    private CheckResult checkFeaturesByHost() {
-        String hardware = getProperty("ro.build.host");
-        if (TextUtils.isEmpty(hardware)) {
-            return new CheckResult(RESULT_UNKNOWN, null);
+    // Index of the first property that identifies an emulator on its own, or -1.
+    private static int findDefiniteMatch(EmulatorSnapshot snapshot) {
+        CheckResult[] properties = propertyResults(snapshot);
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i].result == RESULT_EMULATOR) return i;
         }
-
-        int result = RESULT_UNKNOWN;
-        assert hardware != null;
-        String tempValue = hardware.toLowerCase();
-
-        switch (tempValue) {
-            case "dev":
-            case "Build2":
-            case "buildbot":
-            case "google_sdk":
-            case "android-build":
-                result = RESULT_EMULATOR;
-                break;
+        return -1;
+    }
+
+    private EmulatorSnapshot assemble(DeviceFingerprint fingerprint, int userAppNumber,
+                                      CheckResult cgroup, int missingSignals) {
+        if (fingerprint == null) {
+            // Unknown values are neutral: they neither add suspicion nor decide the verdict.
+            CheckResult unknown = new CheckResult(RESULT_UNKNOWN, null);
+            return new EmulatorSnapshot(
+                    null, unknown, null, unknown, null, unknown, null, unknown,
+                    null, unknown, null, unknown, null, unknown, null, unknown,
+                    EmulatorSnapshot.UNKNOWN, userAppNumber, true, true, true,
+                    cgroup, missingSignals, scoringModel);
         }
-
-        return new CheckResult(result, tempValue);
-    }
-    private String checkFeaturesByHostST() {
-        return getProperty("ro.build.host");
-    }
-
-    private CheckResult checkFeaturesByHardware() {
-        String hardware = getProperty("ro.hardware");
-        if (null == hardware) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        String tempValue = hardware.toLowerCase();
-
-        switch (tempValue) {
-            case "ttvm": // TTVM Emulator
-            case "nox": // Nox Emulator
-            case "cancro": // NetEase MUMU Emulator
-            case "intel": // Microvirt Emulator
-            case "vbox":
-            case "vbox86": // Tencent Emulator
-            case "android_x86": // LDPlayer Emulator
-                result = RESULT_EMULATOR;
-                break;
-            default:
-                result = RESULT_UNKNOWN;
-                break;
+        return new EmulatorSnapshot(
+                fingerprint.hardware, checkProperty(ScoringModel.SIGNAL_HARDWARE, fingerprint.hardware),
+                fingerprint.host, checkProperty(ScoringModel.SIGNAL_HOST, fingerprint.host),
+                fingerprint.flavor, checkProperty(ScoringModel.SIGNAL_FLAVOR, fingerprint.flavor),
+                fingerprint.model, checkProperty(ScoringModel.SIGNAL_MODEL, fingerprint.model),
+                fingerprint.manufacturer, checkProperty(ScoringModel.SIGNAL_MANUFACTURER, fingerprint.manufacturer),
+                fingerprint.board, checkProperty(ScoringModel.SIGNAL_BOARD, fingerprint.board),
+                fingerprint.platform, checkProperty(ScoringModel.SIGNAL_PLATFORM, fingerprint.platform),
+                fingerprint.baseBand, checkProperty(ScoringModel.SIGNAL_BASEBAND, fingerprint.baseBand),
+                fingerprint.sensorNumber,
+                userAppNumber,
+                fingerprint.supportCamera,
+                fingerprint.supportCameraFlash,
+                fingerprint.supportBluetooth,
+                cgroup, missingSignals, scoringModel);
+    }
+
+    private static <T> Future<T> submitSignal(Callable<T> signal) {
+        try {
+            return ProtectorExecutors.signals().submit(signal);
+        } catch (RejectedExecutionException e) {
+            // The bounded pool is saturated; the signal is reported as missing.
+            return null;
         }
-
-        return new CheckResult(result, hardware);
-    }
-
-    private String checkFeaturesByHardwarePT() {
-        return getProperty("ro.hardware");
-    }
-
-    /**
-     * Feature parameter - channel
-     *
-     * @return 0 indicates it may be an emulator, 1 indicates an emulator, 2 indicates it may be a real device
-     */
-    private CheckResult checkFeaturesByFlavor() {
-        String flavor = getProperty("ro.build.flavor");
-        if (null == flavor) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        String tempValue = flavor.toLowerCase();
-
-        if (tempValue.contains("vbox")) result = RESULT_EMULATOR;
-        else if (tempValue.contains("sdk_gphone")) result = RESULT_EMULATOR;
-        else result = RESULT_UNKNOWN;
-
-        return new CheckResult(result, flavor);
-    }
-    private String checkFeaturesByFlavorST() {
-        return getProperty("ro.build.flavor");
-    }
-
-    /**
-     * Feature parameter - device model
-     *
-     * @return 0 indicates it may be an emulator, 1 indicates an emulator, 2 indicates it may be a real device
-     */
-    private CheckResult checkFeaturesByModel() {
-        String model = getProperty("ro.product.model");
-        if (null == model) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        String tempValue = model.toLowerCase();
-
-        if (tempValue.contains("google_sdk")) result = RESULT_EMULATOR;
-        else if (tempValue.contains("emulator")) result = RESULT_EMULATOR;
-        else if (tempValue.contains("android sdk built for x86")) result = RESULT_EMULATOR;
-        else result = RESULT_UNKNOWN;
-
-        return new CheckResult(result, model);
-    }
-    private String checkFeaturesByModelST() {
-        return getProperty("ro.product.model");
     }
 
-    /**
-     * Feature parameter - manufacturer
-     *
-     * @return 0 indicates it may be an emulator, 1 indicates an emulator, 2 indicates it may be a real device
-     */
-    private CheckResult checkFeaturesByManufacturer() {
-        String manufacturer = getProperty("ro.product.manufacturer");
-        if (null == manufacturer) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        String tempValue = manufacturer.toLowerCase();
-
-        if (tempValue.contains("genymotion")) result = RESULT_EMULATOR;
-        else if (tempValue.contains("netease")) result = RESULT_EMULATOR; // NetEase MUMU Emulator
-        else result = RESULT_UNKNOWN;
-
-        return new CheckResult(result, manufacturer);
-    }
-    private String checkFeaturesByManufacturerST() {
-        return getProperty("ro.product.manufacturer");
-    }
-
-    /**
-     * Feature parameter - board name
-     *
-     * @return 0 indicates it may be an emulator, 1 indicates an emulator, 2 indicates it may be a real device
-     */
-    private CheckResult checkFeaturesByBoard() {
-        String board = getProperty("ro.product.board");
-        if (null == board) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        String tempValue = board.toLowerCase();
-
-        if (tempValue.contains("android")) result = RESULT_EMULATOR;
-        else if (tempValue.contains("goldfish")) result = RESULT_EMULATOR;
-        else result = RESULT_UNKNOWN;
-
-        return new CheckResult(result, board);
-    }
-    private String checkFeaturesByBoardST() {
-        return getProperty("ro.product.board");
+    private static <T> T awaitSignal(Future<T> task, long deadline) {
+        if (task == null) return null;
+        try {
+            return task.get(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+        } catch (ExecutionException e) {
+            // A failing signal is treated like one that did not finish.
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
     }
 
-    /**
-     * Feature parameter - platform
-     *
-     * @return 0 indicates it may be an emulator, 1 indicates an emulator, 2 indicates it may be a real device
-     */
-    private CheckResult checkFeaturesByPlatform() {
-        String platform = getProperty("ro.board.platform");
-        if (null == platform) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        String tempValue = platform.toLowerCase();
-
-        if (tempValue.contains("android")) result = RESULT_EMULATOR;
-        else result = RESULT_UNKNOWN;
+    // Additional helper methods follow, providing specific checks (e.g., hardware, flavor, sensors, etc.).
+    // Each method is documented inline.
 
-        return new CheckResult(result, platform);
-    }
-    private String checkFeaturesByPlatformST() {
-        return getProperty("ro.board.platform");
-    }
+    // Method implementations like getUserAppNumber, supportCamera, hasLightSensor, etc., are already self-explanatory.
 
     /**
-     * Feature parameter - baseband information
+     * Feature parameter - one of the build/product properties, matched against every signature of that field in a single pass
      *
+     * @param signal one of the property {@code ScoringModel.SIGNAL_*} ids
      * @return 0 indicates it may be an emulator, 1 indicates an emulator, 2 indicates it may be a real device
      */
-    private CheckResult checkFeaturesByBaseBand() {
-        String baseBandVersion = getProperty("gsm.version.baseband");
-        if (null == baseBandVersion) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
-
-        int result;
-        if (baseBandVersion.contains("1.0.0.0")) result = RESULT_EMULATOR;
-        else result = RESULT_UNKNOWN;
-
-        return new CheckResult(result, baseBandVersion);
-    }
-    private String checkFeaturesByBaseBandST() {
-        return getProperty("gsm.version.baseband");
-    }
-
-    /**
-     * Get the number of sensors
-     */
-    private int getSensorNumber(Context context) {
-        SensorManager sm = (SensorManager) context.getSystemService(SENSOR_SERVICE);
-        return sm.getSensorList(Sensor.TYPE_ALL).size();
-    }
-    private int getSensorNumberST(Context context) {
-        SensorManager sm = (SensorManager) context.getSystemService(SENSOR_SERVICE);
-        return sm.getSensorList(Sensor.TYPE_ALL).size();
+    private CheckResult checkProperty(int signal, String value) {
+        if (null == value) {
+            // Plenty of real devices leave the build host unset.
+            return new CheckResult(signal == ScoringModel.SIGNAL_HOST ? RESULT_UNKNOWN : RESULT_MAYBE_EMULATOR, null);
+        }
+        SignatureMatcher matcher = getSignatureMatcher();
+        int id = matcher.match(signal, value);
+        if (id < 0) return new CheckResult(RESULT_UNKNOWN, value);
+        return new CheckResult(RESULT_EMULATOR, value, matcher.getSignature(id));
     }
 
     /**
      * Get the number of installed third-party applications
      */
-    private int getUserAppNumber() {
-        String userApps = CommandUtil.getSingleInstance().exec("pm list package -3");
-        return getUserAppNum(userApps);
-    }
-
-    /**
-     * Whether the camera is supported
-     */
-    private boolean supportCamera(Context context) {
-            return context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY);
-    }
-    private boolean supportCameraST(Context context) {
-        return context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY);
-    }
-
-    /**
-     * Whether the flashlight is supported
-     */
-    private boolean supportCameraFlash(Context context) {
-        return context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_FLASH);
-    }
-    private boolean supportCameraFlashST(Context context) {
-        return context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_FLASH);
+    private int getUserAppNumber(Context context) {
+        return InstalledApps.countUserApps(context, Integer.MAX_VALUE);
     }
 
-    /**
-     * Whether Bluetooth is supported
-     */
-    private boolean supportBluetooth(Context context) {
-        return context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_BLUETOOTH);
-    }
-    private boolean supportBluetoothST(Context context) {
-        return context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_BLUETOOTH);
+    // For scoring only: counting stops once the model can no longer tell the count apart from
+    // a larger one, so the value is capped and must not be reported as the real count.
+    private int countUserAppsForScoring(Context context, ScoringModel model) {
+        int limit = model.countLimit(ScoringModel.SIGNAL_USER_APP_COUNT);
+        return InstalledApps.countUserApps(context, Math.max(limit, 1));
     }
 
     /**
@@ -730,24 +493,15 @@ public class EmulatorSuperCheckUtil {
         if (null == sensor) return false;
         else return true;
     }
-    private boolean hasLightSensorST(Context context) {
-        SensorManager sensorManager = (SensorManager) context.getSystemService(SENSOR_SERVICE);
-        Sensor sensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT); // Light sensor
-        if (null == sensor) return false;
-        else return true;
-    }
 
     /**
      * Feature parameter - cgroup information
      */
     private CheckResult checkFeaturesByCgroup() {
-        String filter = CommandUtil.getSingleInstance().exec("cat /proc/self/cgroup");
+        String filter = ProcFs.readString("/proc/self/cgroup");
         if (null == filter) return new CheckResult(RESULT_MAYBE_EMULATOR, null);
         return new CheckResult(RESULT_UNKNOWN, filter);
     }
-    private String checkFeaturesByCgroupST() {
-        return CommandUtil.getSingleInstance().exec("cat /proc/self/cgroup");
-    }
 }
 
 // Made with ❤ by puzzletak
@@ -0,0 +1,82 @@
+package com.puzzletak.library;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.SystemClock;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-process view of the installed applications, shared by every check that needs the package list.
+ * <p>
+ * The list is fetched once from PackageManager and reused for a short time, so an emulator scan
+ * and a multi-instance check running back to back cost a single binder call instead of a
+ * {@code pm list package} shell-out (which boots a separate app_process VM) plus another list query.
+ */
+public final class InstalledApps {
+
+    /** How long a fetched package list is reused before PackageManager is asked again. */
+    public static final long SNAPSHOT_TTL_MILLIS = 10 * 1000;
+
+    private static List<ApplicationInfo> snapshot;
+    private static long snapshotTime;
+
+    private InstalledApps() {
+    }
+
+    /**
+     * @return the installed applications, possibly from a snapshot at most {@link #SNAPSHOT_TTL_MILLIS} old;
+     * empty if PackageManager fails
+     */
+    public static synchronized List<ApplicationInfo> getApplications(Context context) {
+        long now = SystemClock.elapsedRealtime();
+        if (snapshot == null || now - snapshotTime > SNAPSHOT_TTL_MILLIS) {
+            List<ApplicationInfo> apps;
+            try {
+                apps = context.getPackageManager().getInstalledApplications(0);
+            } catch (Exception e) {
+                // e.g. the binder transaction was too large
+                apps = null;
+            }
+            snapshot = apps == null
+                    ? Collections.<ApplicationInfo>emptyList()
+                    : Collections.unmodifiableList(apps);
+            snapshotTime = now;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Counts third-party applications, the equivalent of {@code pm list package -3}.
+     *
+     * @param limit counting stops once this many apps have been seen
+     * @return the number of user apps, at most {@code limit}
+     */
+    public static int countUserApps(Context context, int limit) {
+        int count = 0;
+        for (ApplicationInfo info : getApplications(context)) {
+            if ((info.flags & ApplicationInfo.FLAG_SYSTEM) != 0) continue;
+            if (++count >= limit) break;
+        }
+        return count;
+    }
+
+    /**
+     * @return how many installed entries carry the given package name
+     */
+    public static int countPackage(Context context, String packageName) {
+        int count = 0;
+        for (ApplicationInfo info : getApplications(context)) {
+            if (packageName.equals(info.packageName)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Forgets the current snapshot, e.g. after the host app observed a package install.
+     */
+    public static synchronized void invalidate() {
+        snapshot = null;
+    }
+}
@@ -0,0 +1,198 @@
+package com.puzzletak.library;
+
+import android.net.Credentials;
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named cross-process locks backed by abstract-namespace {@link LocalServerSocket}s.
+ * <p>
+ * Holding a lock means having a listening socket bound to its name. The kernel releases the name
+ * when the holder closes it or dies, so a lock can never outlive its process. Another process
+ * can {@link #findHolder ping} a lock: its connect completes in the holder's listen backlog, with
+ * no thread on the holder side, and the peer credentials of the connection identify the holding
+ * process. Unanswered pings are drained from the backlogs whenever this registry is used, and every
+ * {@link #DRAIN_PERIOD_MILLIS} on the library's monitor thread while a lock is held. A ping only
+ * blocks while the holder's backlog is full, so it never waits much longer than that period.
+ * <p>
+ * Multi-process apps should lock one name per process, see {@link #processKey(String)}.
+ */
+public final class LocalSocketLocks {
+
+    private static class SingletonHolder {
+        private static final LocalSocketLocks INSTANCE = new LocalSocketLocks();
+    }
+
+    public static LocalSocketLocks getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Process holding a lock, as reported by the kernel for a ping.
+     */
+    public static final class Holder {
+        public final int pid;
+        public final int uid;
+        public final int gid;
+
+        Holder(int pid, int uid, int gid) {
+            this.pid = pid;
+            this.uid = uid;
+            this.gid = gid;
+        }
+
+        @Override
+        public String toString() {
+            return "pid=" + pid + ", uid=" + uid + ", gid=" + gid;
+        }
+    }
+
+    static final long DRAIN_PERIOD_MILLIS = 1000;
+
+    private final Map<String, LocalServerSocket> locks = new HashMap<>();
+    private ScheduledFuture<?> drainTask;
+
+    private LocalSocketLocks() {
+    }
+
+    /**
+     * @return true if this process holds the lock, whether it was just taken or already held;
+     * false if another process holds it
+     */
+    public synchronized boolean acquire(String name) {
+        checkName(name);
+        drainPings();
+        if (locks.containsKey(name)) return true;
+        LocalServerSocket socket;
+        try {
+            socket = new LocalServerSocket(name);
+        } catch (IOException e) {
+            // The name is bound: someone else holds the lock.
+            return false;
+        }
+        locks.put(name, socket);
+        updateDrainTask();
+        return true;
+    }
+
+    /**
+     * Gives the lock up; another process can take it right away.
+     *
+     * @return false if this process did not hold it
+     */
+    public synchronized boolean release(String name) {
+        LocalServerSocket socket = locks.remove(name);
+        if (socket == null) return false;
+        closeQuietly(socket);
+        updateDrainTask();
+        return true;
+    }
+
+    public synchronized void releaseAll() {
+        for (LocalServerSocket socket : locks.values()) {
+            closeQuietly(socket);
+        }
+        locks.clear();
+        updateDrainTask();
+    }
+
+    /**
+     * @return true if this process holds the lock
+     */
+    public synchronized boolean isHeld(String name) {
+        return locks.containsKey(name);
+    }
+
+    /**
+     * Pings the lock to learn who holds it.
+     *
+     * @return the holding process, possibly this one, or null if nobody holds the lock
+     */
+    public Holder findHolder(String name) {
+        checkName(name);
+        drainPings();
+        LocalSocket socket = new LocalSocket();
+        try {
+            socket.connect(new LocalSocketAddress(name, LocalSocketAddress.Namespace.ABSTRACT));
+            Credentials credentials = socket.getPeerCredentials();
+            if (credentials == null) return null;
+            return new Holder(credentials.getPid(), credentials.getUid(), credentials.getGid());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * @return {@code base} suffixed with the current process name, e.g. {@code "lock@com.example:sync"}
+     */
+    public static String processKey(String base) {
+        String process = SecurityCheckUtil.getSingleInstance().getCurrentProcessName();
+        return process == null ? base : base + "@" + process;
+    }
+
+    // Keeps draining while a lock is held, even if this process never calls the registry again.
+    private void updateDrainTask() {
+        if (!locks.isEmpty() && drainTask == null) {
+            drainTask = ProtectorExecutors.monitor().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    drainPings();
+                }
+            }, DRAIN_PERIOD_MILLIS, DRAIN_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        } else if (locks.isEmpty() && drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+    }
+
+    // Accepts and closes the pings waiting in our backlogs, so they never fill up.
+    // The sockets stay blocking; a zero-timeout poll tells whether accept() would return at once.
+    private synchronized void drainPings() {
+        StructPollfd[] pollFds = {new StructPollfd()};
+        pollFds[0].events = (short) OsConstants.POLLIN;
+        for (LocalServerSocket socket : locks.values()) {
+            pollFds[0].fd = socket.getFileDescriptor();
+            if (pollFds[0].fd == null) continue;
+            try {
+                while (true) {
+                    pollFds[0].revents = 0;
+                    if (Os.poll(pollFds, 0) <= 0 || (pollFds[0].revents & OsConstants.POLLIN) == 0) break;
+                    Os.close(Os.accept(pollFds[0].fd, null));
+                }
+            } catch (ErrnoException e) {
+                // The socket is unusable; leave its pings queued.
+            } catch (SocketException e) {
+                // Cannot happen for AF_UNIX sockets.
+            }
+        }
+    }
+
+    private static void checkName(String name) {
+        if (name == null || name.length() == 0)
+            throw new IllegalArgumentException("lock name must not be empty");
+    }
+
+    private static void closeQuietly(LocalServerSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.puzzletak.library;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs all multi-instance checks of {@link VirtualApkCheckUtil} as one detection.
+ * <p>
+ * The cheap checks (private file path, local server socket) run inline first. The ones doing real
+ * I/O (package manager query, maps scan, /proc walk) run concurrently on the library's signal pool,
+ * so a detection costs about as much as its slowest check instead of the sum of all of them. Each
+ * result is reported to the {@link Listener} on the calling thread as soon as it is known. In fast
+ * verdict mode the first suspect result ends the detection and the checks still running are cancelled.
+ */
+public final class MultiInstanceDetector {
+
+    public static final int CHECK_PRIVATE_FILE_PATH = 0;
+    public static final int CHECK_LOCAL_SERVER_SOCKET = 1;
+    public static final int CHECK_ORIGIN_APK_PACKAGE_NAME = 2;
+    public static final int CHECK_MULTI_APK_PACKAGE_NAME = 3;
+    public static final int CHECK_SAME_UID = 4;
+    public static final int CHECK_COUNT = 5;
+
+    static final String[] CHECK_NAMES = {
+            "privateFilePath", "localServerSocket", "originApkPackageName", "multiApkPackageName", "sameUid"
+    };
+
+    public static final int STATE_CLEAN = 0;
+    public static final int STATE_SUSPECT = 1;
+    /** Not run: cancelled after a fast verdict, timed out, failed, or not applicable. */
+    public static final int STATE_SKIPPED = 2;
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * Receives the result of each check, on the thread calling {@link #detect}.
+     */
+    public interface Listener {
+        /**
+         * @param check   one of the {@code CHECK_*} ids
+         * @param suspect whether the check found a multi-instance environment
+         */
+        void onCheckFinished(int check, boolean suspect);
+    }
+
+    private final Context context;
+    private String uniqueMsg;
+    private boolean fastVerdict;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    public MultiInstanceDetector(Context context) {
+        if (context == null)
+            throw new IllegalArgumentException("context must not be null");
+        this.context = context;
+    }
+
+    /**
+     * Enables the local server socket check; see {@link VirtualApkCheckUtil#checkByCreateLocalServerSocket}
+     * for how to choose the name. Without it the check is skipped.
+     */
+    public MultiInstanceDetector setUniqueMsg(String uniqueMsg) {
+        this.uniqueMsg = uniqueMsg;
+        return this;
+    }
+
+    /**
+     * @param fastVerdict stop at the first suspect result instead of running every check
+     */
+    public MultiInstanceDetector setFastVerdict(boolean fastVerdict) {
+        this.fastVerdict = fastVerdict;
+        return this;
+    }
+
+    /**
+     * @param timeoutMillis deadline for the concurrent checks; those still running are skipped
+     */
+    public MultiInstanceDetector setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Runs the detection, blocking until every check has finished, the deadline has passed or,
+     * in fast verdict mode, a check was suspect.
+     *
+     * @param listener receives each result as it becomes known; may be null
+     */
+    public Report detect(Listener listener) {
+        long start = SystemClock.elapsedRealtime();
+        int[] states = new int[CHECK_COUNT];
+        for (int i = 0; i < CHECK_COUNT; i++) {
+            states[i] = STATE_SKIPPED;
+        }
+        final VirtualApkCheckUtil checks = VirtualApkCheckUtil.getSingleInstance();
+
+        boolean found = finish(states, CHECK_PRIVATE_FILE_PATH,
+                checks.checkByPrivateFilePath(context, null), listener);
+        if (uniqueMsg != null && !(found && fastVerdict)) {
+            found |= finish(states, CHECK_LOCAL_SERVER_SOCKET,
+                    checks.checkByCreateLocalServerSocket(uniqueMsg, null), listener);
+        }
+        if (found && fastVerdict) return new Report(states, SystemClock.elapsedRealtime() - start);
+
+        ExecutorCompletionService<int[]> completion =
+                new ExecutorCompletionService<>(ProtectorExecutors.signals());
+        Future<?>[] tasks = new Future<?>[CHECK_COUNT];
+        int pending = 0;
+        for (int check = CHECK_ORIGIN_APK_PACKAGE_NAME; check < CHECK_COUNT; check++) {
+            Callable<int[]> task = expensiveCheck(checks, check);
+            try {
+                tasks[check] = completion.submit(task);
+                pending++;
+            } catch (RejectedExecutionException e) {
+                // The pool is saturated; run the check here rather than dropping it.
+                try {
+                    int[] result = task.call();
+                    found |= finish(states, check, result[1] == STATE_SUSPECT, listener);
+                } catch (Exception ignore) {
+                }
+                if (found && fastVerdict) break;
+            }
+        }
+
+        long deadline = start + timeoutMillis;
+        try {
+            while (pending > 0 && !(found && fastVerdict)) {
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) break;
+                Future<int[]> done = completion.poll(remaining, TimeUnit.MILLISECONDS);
+                if (done == null) break;
+                pending--;
+                try {
+                    int[] result = done.get();
+                    found |= finish(states, result[0], result[1] == STATE_SUSPECT, listener);
+                } catch (ExecutionException e) {
+                    // A failing check is reported as skipped.
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<?> task : tasks) {
+                if (task != null) task.cancel(true);
+            }
+        }
+        return new Report(states, SystemClock.elapsedRealtime() - start);
+    }
+
+    private Callable<int[]> expensiveCheck(final VirtualApkCheckUtil checks, final int check) {
+        return new Callable<int[]>() {
+            @Override
+            public int[] call() {
+                boolean suspect;
+                switch (check) {
+                    case CHECK_ORIGIN_APK_PACKAGE_NAME:
+                        suspect = checks.checkByOriginApkPackageName(context, null);
+                        break;
+                    case CHECK_MULTI_APK_PACKAGE_NAME:
+                        suspect = checks.checkByMultiApkPackageName(null);
+                        break;
+                    default:
+                        suspect = checks.checkByHasSameUid(null);
+                        break;
+                }
+                return new int[]{check, suspect ? STATE_SUSPECT : STATE_CLEAN};
+            }
+        };
+    }
+
+    private static boolean finish(int[] states, int check, boolean suspect, Listener listener) {
+        states[check] = suspect ? STATE_SUSPECT : STATE_CLEAN;
+        if (listener != null) listener.onCheckFinished(check, suspect);
+        return suspect;
+    }
+
+    /**
+     * Outcome of a detection.
+     */
+    public static final class Report {
+        /** Whether any check was suspect. */
+        public final boolean suspect;
+        /** Wall time of the whole detection. */
+        public final long elapsedMillis;
+        private final int[] states;
+
+        Report(int[] states, long elapsedMillis) {
+            this.states = states;
+            this.elapsedMillis = elapsedMillis;
+            boolean any = false;
+            for (int state : states) {
+                if (state == STATE_SUSPECT) any = true;
+            }
+            this.suspect = any;
+        }
+
+        /**
+         * @return one of the {@code STATE_*} values for a {@code CHECK_*} id
+         */
+        public int getState(int check) {
+            return states[check];
+        }
+
+        public boolean isSuspect(int check) {
+            return states[check] == STATE_SUSPECT;
+        }
+
+        /**
+         * @return the number of checks that ran to completion
+         */
+        public int completedCount() {
+            int completed = 0;
+            for (int state : states) {
+                if (state != STATE_SKIPPED) completed++;
+            }
+            return completed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("suspect=").append(suspect)
+                    .append(", elapsed=").append(elapsedMillis).append("ms");
+            for (int i = 0; i < states.length; i++) {
+                builder.append(", ").append(CHECK_NAMES[i]).append('=')
+                        .append(states[i] == STATE_SUSPECT ? "suspect" : states[i] == STATE_CLEAN ? "clean" : "skipped");
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package com.puzzletak.library;
 
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Project Name: PuzzleTakProtector
  * Package Name: com.puzzletak.library
@@ -8,6 +15,9 @@ package com.puzzletak.library;
 public class NDKUtil {
     private static volatile boolean mIsLibLoaded = false;
     private static volatile boolean mIsNativeInited = false;
+    private static volatile boolean mLibLoadFailed = false;
+    private static Application mBoundApplication;
+    private static Application.ActivityLifecycleCallbacks mLifecycleCallbacks;
 
     // Default library loader
     private static LibLoader localLibLoader = new LibLoader() {
@@ -34,6 +44,25 @@ public class NDKUtil {
         }
     }
 
+    /**
+     * Loads "antitrace" with the default loader, for callers that have a Java fallback.
+     *
+     * @return false if the library cannot be loaded on this device; later calls do not retry.
+     */
+    static boolean tryLoadLibrary() {
+        if (mIsLibLoaded) return true;
+        if (mLibLoadFailed) return false;
+        try {
+            loadLibrariesOnce(null);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            mLibLoadFailed = true;
+        } catch (SecurityException e) {
+            mLibLoadFailed = true;
+        }
+        return false;
+    }
+
     /**
      * Use this method to load other native libraries using NDKUtil.
      *
@@ -58,21 +87,109 @@ public class NDKUtil {
 
     // Initialize the NDK environment by loading libraries and initializing native code
     private void initNDK(LibLoader libLoader) {
-        loadLibrariesOnce(libLoader);
-        initNativeOnce();
+        initNative(libLoader);
     }
 
-    // Ensure native initialization happens only once
-    private void initNativeOnce() {
+    /**
+     * Loads "antitrace" if needed and initializes its native state (watchdog control and counters).
+     * Calling it again after a successful init does nothing.
+     *
+     * @param libLoader custom LibLoader, if null the default loader is used.
+     * @return true if the native code is ready.
+     */
+    public static boolean initNative(LibLoader libLoader) {
         synchronized (NDKUtil.class) {
             if (!mIsNativeInited) {
-                // Uncomment the following line to initialize native code
-                // native_init();
-                mIsNativeInited = true;
+                loadLibrariesOnce(libLoader);
+                mIsNativeInited = NativeWatchdog.init();
             }
+            return mIsNativeInited;
+        }
+    }
+
+    public static boolean isNativeInited() {
+        return mIsNativeInited;
+    }
+
+    /**
+     * Stops the watchdog, unbinds it from the app lifecycle and resets the native counters.
+     * The library stays loaded; {@link #initNative(LibLoader)} brings it back.
+     */
+    public static void shutdownNative() {
+        boolean wasInited;
+        synchronized (NDKUtil.class) {
+            unbindWatchdogFromLifecycle();
+            wasInited = mIsNativeInited;
+            mIsNativeInited = false;
+        }
+        // Joins the watchdog thread, whose listener may be waiting for the NDKUtil lock.
+        if (wasInited) NativeWatchdog.shutdown();
+    }
+
+    /**
+     * Starts the native watchdog and lets it sleep while the app is in the background:
+     * it is paused when the last started activity stops and resumed when one starts again.
+     *
+     * @param intervalMillis delay between two TracerPid reads while in the foreground.
+     */
+    public static void bindWatchdogToLifecycle(Application application, long intervalMillis) {
+        synchronized (NDKUtil.class) {
+            if (mLifecycleCallbacks != null) return;
+            if (!NativeWatchdog.start(intervalMillis, true)) return;
+            mLifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+                // Activities started before binding are not known: tracking which ones started,
+                // instead of counting, keeps their stop from unbalancing the state.
+                private final Set<Activity> startedActivities = new HashSet<>();
+
+                @Override
+                public void onActivityStarted(Activity activity) {
+                    if (startedActivities.isEmpty()) NativeWatchdog.resume();
+                    startedActivities.add(activity);
+                }
+
+                @Override
+                public void onActivityStopped(Activity activity) {
+                    startedActivities.remove(activity);
+                    // A configuration change restarts the activity right away; stay awake through it.
+                    if (startedActivities.isEmpty() && !activity.isChangingConfigurations()) {
+                        NativeWatchdog.pause();
+                    }
+                }
+
+                @Override
+                public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                }
+
+                @Override
+                public void onActivityResumed(Activity activity) {
+                }
+
+                @Override
+                public void onActivityPaused(Activity activity) {
+                }
+
+                @Override
+                public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+                }
+
+                @Override
+                public void onActivityDestroyed(Activity activity) {
+                }
+            };
+            mBoundApplication = application;
+            application.registerActivityLifecycleCallbacks(mLifecycleCallbacks);
         }
     }
 
-    // Uncomment and implement this method to initialize native code
-    // private static native void native_init();
+    /**
+     * Stops following the app lifecycle; the watchdog keeps its current state.
+     */
+    public static void unbindWatchdogFromLifecycle() {
+        synchronized (NDKUtil.class) {
+            if (mLifecycleCallbacks == null) return;
+            mBoundApplication.unregisterActivityLifecycleCallbacks(mLifecycleCallbacks);
+            mBoundApplication = null;
+            mLifecycleCallbacks = null;
+        }
+    }
 }
@@ -0,0 +1,221 @@
+package com.puzzletak.library;
+
+import android.util.Log;
+
+/**
+ * Java side of the native anti-trace watchdog in {@code antitrace.so}.
+ * <p>
+ * A native thread keeps {@code /proc/self/status} open and re-reads its TracerPid with
+ * {@code pread} every interval. It also wakes up immediately when {@code /proc/self/mem},
+ * {@code /proc/self/pagemap} or {@code /proc/self/maps} is accessed, which debuggers and memory
+ * dumpers usually do first. Detections are reported to the {@link Listener}; what to do about
+ * them is decided here in Java, not in native code.
+ */
+public final class NativeWatchdog {
+
+    private static final String TAG = "NativeWatchdog";
+
+    /**
+     * Interval used by {@link PuzzleTakProtectorLib#checkIsBeingTracedByC()}, the 5 s of the original
+     * polling thread; accesses to our memory files still trigger a check right away.
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 5000;
+
+    /** Tracers with a pid up to this one are ignored by {@link #EXIT_POLICY}, as the original thread did. */
+    public static final int EXIT_MIN_TRACER_PID = 1000;
+
+    /**
+     * Receives detections on the native watchdog thread.
+     */
+    public interface Listener {
+        /**
+         * Called when the process becomes traced, and again if the tracer changes.
+         */
+        void onTracerDetected(int tracerPid);
+    }
+
+    /**
+     * Policy used when no listener is set: the detection is only logged.
+     */
+    public static final Listener LOG_POLICY = new Listener() {
+        @Override
+        public void onTracerDetected(int tracerPid) {
+            Log.w(TAG, "Process is traced by " + tracerPid);
+        }
+    };
+
+    /**
+     * Opt-in policy terminating the process, like the original native thread: exits when the
+     * tracer pid is above {@link #EXIT_MIN_TRACER_PID}, and only logs otherwise.
+     */
+    public static final Listener EXIT_POLICY = new Listener() {
+        @Override
+        public void onTracerDetected(int tracerPid) {
+            if (tracerPid <= EXIT_MIN_TRACER_PID) {
+                LOG_POLICY.onTracerDetected(tracerPid);
+                return;
+            }
+            Log.w(TAG, "Process is traced by " + tracerPid + ", exiting");
+            System.exit(0);
+        }
+    };
+
+    private static volatile Listener listener = LOG_POLICY;
+    private static volatile boolean running;
+    private static volatile boolean paused;
+
+    private NativeWatchdog() {
+    }
+
+    /**
+     * @param l receives detections, e.g. {@link #EXIT_POLICY}, or null to restore {@link #LOG_POLICY}
+     */
+    public static void setListener(Listener l) {
+        listener = l == null ? LOG_POLICY : l;
+    }
+
+    /**
+     * Starts the watchdog thread, loading the native library first if needed.
+     * Does nothing if the watchdog is already running.
+     *
+     * @param intervalMillis  delay between two TracerPid reads when nothing wakes the thread up
+     * @param wakeOnAccess    also re-check as soon as our memory files are accessed, where inotify allows it
+     * @return false if the native thread could not be started
+     */
+    public static boolean start(long intervalMillis, boolean wakeOnAccess) {
+        // Outside our monitor: NDKUtil calls start() while holding its own lock, so only the
+        // NDKUtil -> NativeWatchdog lock order may exist.
+        if (!NDKUtil.initNative(null)) return false;
+        int interval = (int) Math.max(1, Math.min(Integer.MAX_VALUE, intervalMillis));
+        synchronized (NativeWatchdog.class) {
+            // A pause() issued before the library was initialized is applied here.
+            if (paused) nativeSetPaused(true);
+            running = nativeStart(interval, wakeOnAccess);
+            return running;
+        }
+    }
+
+    /**
+     * Stops the watchdog thread and waits for it to exit; may be called from the listener.
+     */
+    public static void stop() {
+        // Not synchronized: the watchdog thread may be blocked in the listener calling stop() too.
+        if (!running) return;
+        running = false;
+        nativeStop();
+    }
+
+    /**
+     * @return true while the native thread runs; false once stopped or if it exited on a read error
+     */
+    public static boolean isRunning() {
+        if (!running) return false;
+        long[] values = new long[6];
+        nativeGetStats(values);
+        return values[4] != 0;
+    }
+
+    /**
+     * Puts the watchdog thread to sleep until {@link #resume()}, e.g. while the app is in the background.
+     * A paused thread performs no reads and no wake ups. Pausing before {@link #start} makes it start paused.
+     */
+    public static void pause() {
+        paused = true;
+        if (NDKUtil.isNativeInited()) nativeSetPaused(true);
+    }
+
+    public static void resume() {
+        paused = false;
+        if (NDKUtil.isNativeInited()) nativeSetPaused(false);
+    }
+
+    public static boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return the native counters since the last {@link NDKUtil#initNative(LibLoader)}, all zero if not initialized
+     */
+    public static Stats getStats() {
+        long[] values = new long[6];
+        if (NDKUtil.isNativeInited()) nativeGetStats(values);
+        return new Stats(values);
+    }
+
+    /**
+     * Overhead and results of the native watchdog.
+     */
+    public static final class Stats {
+        /** TracerPid reads performed. */
+        public final long polls;
+        /** Total and longest time spent in a single read, in nanoseconds. */
+        public final long totalPollNanos;
+        public final long maxPollNanos;
+        /** Tracers reported to the listener. */
+        public final long detections;
+        public final boolean running;
+        public final boolean paused;
+
+        Stats(long[] values) {
+            polls = values[0];
+            totalPollNanos = values[1];
+            maxPollNanos = values[2];
+            detections = values[3];
+            running = values[4] != 0;
+            paused = values[5] != 0;
+        }
+
+        public long averagePollNanos() {
+            return polls == 0 ? 0 : totalPollNanos / polls;
+        }
+
+        @Override
+        public String toString() {
+            return "polls=" + polls + ", avg=" + averagePollNanos() + "ns, max=" + maxPollNanos
+                    + "ns, detections=" + detections + ", running=" + running + ", paused=" + paused;
+        }
+    }
+
+    static boolean init() {
+        return nativeInit();
+    }
+
+    static void shutdown() {
+        running = false;
+        paused = false;
+        nativeShutdown();
+    }
+
+    /**
+     * One-off TracerPid read performed natively.
+     *
+     * @return the tracer pid, 0 if not traced, or -1 if it cannot be read
+     */
+    public static int readTracerPid() {
+        NDKUtil.loadLibrariesOnce(null);
+        return nativeReadTracerPid();
+    }
+
+    // Called from native code.
+    private static void onTracerDetected(int tracerPid) {
+        try {
+            listener.onTracerDetected(tracerPid);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Watchdog listener failed", e);
+        }
+    }
+
+    private static native boolean nativeInit();
+
+    private static native void nativeShutdown();
+
+    private static native boolean nativeStart(int intervalMillis, boolean wakeOnAccess);
+
+    private static native void nativeStop();
+
+    private static native void nativeSetPaused(boolean paused);
+
+    private static native void nativeGetStats(long[] out);
+
+    private static native int nativeReadTracerPid();
+}
@@ -0,0 +1,135 @@
+package com.puzzletak.library;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.util.Arrays;
+
+/**
+ * Checks a fixed set of paths for existence, cheap enough to repeat on every sensitive screen.
+ * <p>
+ * A full sweep runs every path through a {@link ProbeBatch}, i.e. one {@code access(F_OK)} per path
+ * in a single JNI call. Paths found missing are trusted for the negative TTL: until it expires, a
+ * sweep only re-checks the paths that existed last time, which for a clean device is none at all.
+ * Paths that appear in the meantime are picked up by the next full sweep.
+ */
+public final class PathProbe {
+
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 30 * 1000;
+
+    private static final PathProbe[] sectionProbes = new PathProbe[SignaturePack.SECTION_COUNT];
+    private static final SignaturePack[] sectionPacks = new SignaturePack[SignaturePack.SECTION_COUNT];
+
+    private final String[] paths;
+    private final ProbeBatch batch;
+    private final int[] results;
+    private final long negativeTtlNanos;
+    private long sweptAt;
+    private boolean swept;
+
+    /**
+     * @param paths            absolute paths to check
+     * @param negativeTtlMillis how long a missing path is trusted to stay missing; 0 checks every path on every sweep
+     */
+    public PathProbe(String[] paths, long negativeTtlMillis) {
+        this.paths = paths.clone();
+        ProbeBatch.Builder builder = new ProbeBatch.Builder();
+        for (String path : this.paths) {
+            builder.exists(path);
+        }
+        this.batch = builder.build();
+        this.results = new int[this.paths.length];
+        this.negativeTtlNanos = Math.max(0, negativeTtlMillis) * 1000000L;
+    }
+
+    /**
+     * @return the shared probe for the paths of a {@link SignaturePack} section, rebuilt when a new pack is installed
+     */
+    public static PathProbe forSection(int section) {
+        SignaturePack pack = SignaturePack.current();
+        synchronized (PathProbe.class) {
+            if (sectionPacks[section] != pack) {
+                String[] paths = new String[pack.size(section)];
+                for (int i = 0; i < paths.length; i++) {
+                    paths[i] = pack.getPattern(section, i);
+                }
+                sectionProbes[section] = new PathProbe(paths, DEFAULT_NEGATIVE_TTL_MILLIS);
+                sectionPacks[section] = pack;
+            }
+            return sectionProbes[section];
+        }
+    }
+
+    /**
+     * @return the number of paths that exist
+     */
+    public synchronized int sweep() {
+        long now = System.nanoTime();
+        if (!swept || now - sweptAt >= negativeTtlNanos) {
+            batch.run(results);
+            sweptAt = now;
+            swept = true;
+        } else {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == 1) results[i] = access(paths[i]) ? 1 : 0;
+            }
+        }
+        int found = 0;
+        for (int result : results) {
+            if (result == 1) found++;
+        }
+        return found;
+    }
+
+    /**
+     * @return the first path that exists, or null
+     */
+    public synchronized String findFirst() {
+        if (sweep() == 0) return null;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == 1) return paths[i];
+        }
+        return null;
+    }
+
+    public synchronized boolean anyExists() {
+        return sweep() > 0;
+    }
+
+    /**
+     * @return whether the i-th path existed at the last sweep
+     */
+    public synchronized boolean exists(int i) {
+        return results[i] == 1;
+    }
+
+    public int size() {
+        return paths.length;
+    }
+
+    public String getPath(int i) {
+        return paths[i];
+    }
+
+    boolean hasPaths(String[] other) {
+        return Arrays.equals(paths, other);
+    }
+
+    /**
+     * Forgets the cached results; the next sweep checks every path.
+     */
+    public synchronized void invalidate() {
+        swept = false;
+    }
+
+    // Only reached for paths that existed, so the exception path is rare.
+    private static boolean access(String path) {
+        try {
+            Os.access(path, OsConstants.F_OK);
+            return true;
+        } catch (ErrnoException e) {
+            return false;
+        }
+    }
+}
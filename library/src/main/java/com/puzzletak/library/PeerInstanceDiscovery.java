@@ -0,0 +1,343 @@
+package com.puzzletak.library;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Port based multi-instance detection, for cloners that defeat the {@code LocalServerSocket} check.
+ * <p>
+ * Every instance listens on a random loopback port and sends a shared secret to the other loopback
+ * listeners found in the {@link SocketTable}. An instance that receives the secret knows a copy of
+ * the app is running next to it. Listening, accepting, outgoing probes and reads all run on a single
+ * selector thread: at most {@link #MAX_PROBES} probes and {@link #MAX_INBOUND} inbound connections are
+ * open at once, every connection is closed after {@link #CONNECTION_TIMEOUT_MILLIS}, and {@link #stop()}
+ * closes everything.
+ */
+public final class PeerInstanceDiscovery {
+
+    private static final String TAG = "PeerInstanceDiscovery";
+
+    static final int MAX_PROBES = 8;
+    static final int MAX_INBOUND = 16;
+    static final int MAX_BIND_ATTEMPTS = 8;
+    static final int MAX_ACCEPT_FAILURES = 8;
+    static final long CONNECTION_TIMEOUT_MILLIS = 2000;
+
+    private static final int MIN_PORT = 10000;
+    private static final int MAX_PORT = 65534;
+
+    private final byte[] secret;
+    private final VirtualCheckCallback callback;
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean found;
+    private int port = -1;
+
+    // Owned by the selector thread.
+    private final ArrayDeque<Integer> pendingPorts = new ArrayDeque<>();
+    private int probes;
+    private int inbound;
+    private int acceptFailures;
+
+    /**
+     * @param secret   message identifying this app; instances of other apps must not share it
+     * @param callback notified, on the selector thread, when another instance sends the secret
+     */
+    public PeerInstanceDiscovery(String secret, VirtualCheckCallback callback) {
+        if (secret == null || secret.length() == 0)
+            throw new IllegalArgumentException("secret must not be empty");
+        this.secret = (secret + "\n").getBytes(ProcFs.UTF_8);
+        this.callback = callback;
+    }
+
+    /**
+     * Binds the listener, queues a probe to every other loopback port and starts the selector thread.
+     *
+     * @return false if no port could be bound or the discovery is already running
+     */
+    public synchronized boolean start() {
+        if (running) return false;
+        try {
+            selector = Selector.open();
+            server = bind();
+            if (server == null) {
+                closeAll();
+                return false;
+            }
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot start peer discovery", e);
+            closeAll();
+            return false;
+        }
+        for (int candidate : SocketTable.read().getListeningLocalPorts(-1)) {
+            if (candidate != port) pendingPorts.add(candidate);
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "PuzzleTak-peer");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stops listening and closes every connection; waits for the selector thread unless called from it.
+     */
+    public void stop() {
+        Thread worker;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            worker = thread;
+            selector.wakeup();
+        }
+        if (worker != Thread.currentThread()) {
+            try {
+                worker.join(CONNECTION_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return true once another instance has sent the secret
+     */
+    public boolean hasFoundPeer() {
+        return found;
+    }
+
+    /**
+     * @return the loopback port this instance listens on, or -1
+     */
+    public synchronized int getPort() {
+        return port;
+    }
+
+    private ServerSocketChannel bind() throws IOException {
+        Random random = new Random();
+        InetAddress loopback = InetAddress.getByAddress("localhost", new byte[]{127, 0, 0, 1});
+        for (int attempt = 0; attempt < MAX_BIND_ATTEMPTS; attempt++) {
+            int candidate = MIN_PORT + random.nextInt(MAX_PORT - MIN_PORT);
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.socket().bind(new InetSocketAddress(loopback, candidate));
+                port = candidate;
+                return channel;
+            } catch (BindException e) {
+                channel.close();
+            }
+        }
+        return null;
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                startProbes();
+                if (probes == 0 && inbound == 0) {
+                    // Only the listener is open: sleep until someone connects or stop() is called.
+                    selector.select();
+                } else {
+                    long now = System.currentTimeMillis();
+                    selector.select(nextDeadline(now) - now);
+                }
+                if (!running) break;
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    try {
+                        if (key.isConnectable()) finishConnect(key);
+                        else if (key.isWritable()) write(key);
+                        else if (key.isReadable()) read(key);
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+                expire(System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Peer discovery stopped", e);
+        } catch (ClosedSelectorException ignore) {
+        } finally {
+            synchronized (this) {
+                running = false;
+                closeAll();
+            }
+        }
+    }
+
+    private void startProbes() {
+        while (probes < MAX_PROBES && !pendingPorts.isEmpty()) {
+            int target = pendingPorts.poll();
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                Connection connection = new Connection(ByteBuffer.wrap(secret), true);
+                if (channel.connect(new InetSocketAddress(server.socket().getInetAddress(), target))) {
+                    channel.register(selector, SelectionKey.OP_WRITE, connection);
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                }
+                probes++;
+            } catch (IOException e) {
+                // Refused right away: nothing listens there any more.
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    // A failed accept only loses that connection and the listener stays registered. The discovery
+    // stops if the listener is closed or keeps failing, rather than spinning on a ready key.
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            channel = server.accept();
+            if (channel == null) return;
+            if (inbound >= MAX_INBOUND) {
+                channel.close();
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(ByteBuffer.allocate(secret.length), false));
+            inbound++;
+            acceptFailures = 0;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot accept a peer connection", e);
+            closeQuietly(channel);
+            if (!server.isOpen() || ++acceptFailures >= MAX_ACCEPT_FAILURES) running = false;
+        }
+    }
+
+    private void finishConnect(SelectionKey key) throws IOException {
+        if (((SocketChannel) key.channel()).finishConnect()) key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ((SocketChannel) key.channel()).write(connection.buffer);
+        if (!connection.buffer.hasRemaining()) close(key);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        int read = ((SocketChannel) key.channel()).read(connection.buffer);
+        if (!connection.buffer.hasRemaining()) {
+            // Only the first secret.length bytes are compared: a peer sends the secret and nothing else.
+            if (matchesSecret(connection.buffer.array())) {
+                found = true;
+                if (callback != null) callback.findSuspect();
+            }
+            close(key);
+        } else if (read < 0) {
+            close(key);
+        }
+    }
+
+    private boolean matchesSecret(byte[] data) {
+        for (int i = 0; i < secret.length; i++) {
+            if (data[i] != secret[i]) return false;
+        }
+        return true;
+    }
+
+    private long nextDeadline(long now) {
+        long next = now + CONNECTION_TIMEOUT_MILLIS;
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && connection.deadline < next) next = connection.deadline;
+        }
+        return Math.max(next, now + 1);
+    }
+
+    private void expire(long now) {
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && key.isValid() && connection.deadline <= now) close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        if (connection != null && !connection.closed) {
+            connection.closed = true;
+            if (connection.outgoing) probes--;
+            else inbound--;
+        }
+        key.cancel();
+        closeQuietly(key.channel());
+    }
+
+    private void closeAll() {
+        if (selector != null) {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key.channel());
+                }
+                selector.close();
+            } catch (IOException ignore) {
+            } catch (ClosedSelectorException ignore) {
+            }
+        }
+        closeQuietly(server);
+        pendingPorts.clear();
+        probes = 0;
+        inbound = 0;
+        acceptFailures = 0;
+        port = -1;
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private static final class Connection {
+        final ByteBuffer buffer;
+        final boolean outgoing;
+        final long deadline = System.currentTimeMillis() + CONNECTION_TIMEOUT_MILLIS;
+        boolean closed;
+
+        Connection(ByteBuffer buffer, boolean outgoing) {
+            this.buffer = buffer;
+            this.outgoing = outgoing;
+        }
+    }
+}
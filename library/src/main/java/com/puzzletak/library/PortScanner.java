@@ -0,0 +1,201 @@
+package com.puzzletak.library;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Probes TCP ports with non-blocking connects.
+ * <p>
+ * All connects are started at once and completed through a single {@link Selector}, so a scan takes
+ * at most one timeout window however many ports it covers. Every channel is closed before
+ * {@link #scan} returns, whatever the outcome. Loopback hosts and IP literals never go through DNS.
+ */
+public final class PortScanner {
+
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    /** The connect neither completed nor failed within the timeout. */
+    public static final int STATE_TIMED_OUT = 2;
+
+    /** Default ports of frida-server. */
+    public static final int[] FRIDA_PORTS = {27042, 27043};
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 300;
+
+    private PortScanner() {
+    }
+
+    /**
+     * Connects to every port concurrently and reports how each connect ended.
+     *
+     * @param host          host name or IP literal; null or "localhost" means 127.0.0.1
+     * @param ports         ports to probe
+     * @param timeoutMillis time allowed for all connects together
+     */
+    public static Result scan(String host, int[] ports, long timeoutMillis) throws UnknownHostException {
+        InetAddress address = resolve(host);
+        int[] states = new int[ports.length];
+        SocketChannel[] channels = new SocketChannel[ports.length];
+        Selector selector = null;
+        try {
+            selector = Selector.open();
+            int pending = 0;
+            for (int i = 0; i < ports.length; i++) {
+                try {
+                    SocketChannel channel = SocketChannel.open();
+                    channels[i] = channel;
+                    channel.configureBlocking(false);
+                    if (channel.connect(new InetSocketAddress(address, ports[i]))) {
+                        states[i] = STATE_OPEN;
+                    } else {
+                        channel.register(selector, SelectionKey.OP_CONNECT, i);
+                        states[i] = STATE_TIMED_OUT;
+                        pending++;
+                    }
+                } catch (IOException e) {
+                    // Loopback connects to a closed port usually fail right away.
+                    states[i] = STATE_CLOSED;
+                }
+            }
+
+            long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+            while (pending > 0) {
+                long remaining = (deadline - System.nanoTime()) / 1000000L;
+                if (remaining <= 0) break;
+                if (selector.select(remaining) == 0) continue;
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    int i = (Integer) key.attachment();
+                    try {
+                        if (!((SocketChannel) key.channel()).finishConnect()) continue;
+                        states[i] = STATE_OPEN;
+                    } catch (IOException e) {
+                        states[i] = STATE_CLOSED;
+                    }
+                    key.cancel();
+                    pending--;
+                }
+            }
+        } catch (IOException e) {
+            // The selector could not be opened; ports not reached stay unknown.
+        } finally {
+            for (SocketChannel channel : channels) {
+                closeQuietly(channel);
+            }
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+        return new Result(ports.clone(), states);
+    }
+
+    public static Result scan(String host, int[] ports) throws UnknownHostException {
+        return scan(host, ports, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @return true if a connect to the port succeeds within the default timeout
+     */
+    public static boolean isOpen(String host, int port) throws UnknownHostException {
+        return scan(host, new int[]{port}).isOpen(port);
+    }
+
+    static InetAddress resolve(String host) throws UnknownHostException {
+        if (host == null || host.equals("localhost") || host.equals("127.0.0.1"))
+            return InetAddress.getByAddress("localhost", new byte[]{127, 0, 0, 1});
+        byte[] ipv4 = parseIpv4(host);
+        if (ipv4 != null) return InetAddress.getByAddress(host, ipv4);
+        // IPv6 literals are parsed locally too; only real host names are looked up.
+        return InetAddress.getByName(host);
+    }
+
+    private static byte[] parseIpv4(String host) {
+        byte[] address = new byte[4];
+        int part = 0;
+        int value = -1;
+        for (int i = 0; i <= host.length(); i++) {
+            char c = i < host.length() ? host.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) return null;
+            } else if (c == '.' && value >= 0 && part < 4) {
+                address[part++] = (byte) value;
+                value = -1;
+            } else {
+                return null;
+            }
+        }
+        return part == 4 ? address : null;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Outcome of a scan, in the order the ports were given.
+     */
+    public static final class Result {
+        private final int[] ports;
+        private final int[] states;
+
+        Result(int[] ports, int[] states) {
+            this.ports = ports;
+            this.states = states;
+        }
+
+        /**
+         * @return one of the {@code STATE_*} values, or {@link #STATE_CLOSED} for a port that was not scanned
+         */
+        public int getState(int port) {
+            for (int i = 0; i < ports.length; i++) {
+                if (ports[i] == port) return states[i];
+            }
+            return STATE_CLOSED;
+        }
+
+        public boolean isOpen(int port) {
+            return getState(port) == STATE_OPEN;
+        }
+
+        public boolean anyOpen() {
+            for (int state : states) {
+                if (state == STATE_OPEN) return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return port to {@code STATE_*}, in scan order
+         */
+        public Map<Integer, Integer> toMap() {
+            Map<Integer, Integer> map = new LinkedHashMap<>();
+            for (int i = 0; i < ports.length; i++) {
+                map.put(ports[i], states[i]);
+            }
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            return toMap().toString();
+        }
+    }
+}
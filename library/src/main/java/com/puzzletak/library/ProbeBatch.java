@@ -0,0 +1,207 @@
+package com.puzzletak.library;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * A fixed list of file probes (does a path exist, does a file start with / contain some bytes,
+ * what is the value of a "Key: value" line) packed once and run in a single JNI call.
+ * <p>
+ * The probes are encoded into one byte array when the batch is built. Running it crosses into
+ * {@code antitrace.so} once, whatever the number of probes, and writes the results into a
+ * caller-owned int array. Repeated runs with the same array allocate nothing on the Java side.
+ * If the native library cannot be loaded, the same probes run in Java.
+ * <p>
+ * Packed layout, per probe: byte op, short path length, path (UTF-8), short argument length, argument.
+ */
+public final class ProbeBatch {
+
+    public static final int OP_EXISTS = 0;
+    public static final int OP_STARTS_WITH = 1;
+    public static final int OP_CONTAINS = 2;
+    public static final int OP_KEY_VALUE = 3;
+
+    /** Result of a starts-with or contains probe whose file cannot be read. */
+    public static final int RESULT_UNREADABLE = -1;
+    /** Result of a key-value probe whose file cannot be read or has no such key. */
+    public static final int RESULT_NO_VALUE = Integer.MIN_VALUE;
+
+    // Paths and arguments are copied into fixed size native buffers.
+    private static final int MAX_PATH_BYTES = 4095;
+    private static final int MAX_ARG_BYTES = 255;
+
+    private final byte[] packed;
+    private final int[] ops;
+    private final String[] paths;
+    private final byte[][] args;
+
+    private ProbeBatch(byte[] packed, int[] ops, String[] paths, byte[][] args) {
+        this.packed = packed;
+        this.ops = ops;
+        this.paths = paths;
+        this.args = args;
+    }
+
+    public int size() {
+        return ops.length;
+    }
+
+    /**
+     * Runs every probe. Results are, in probe order: 1 or 0 for exists, starts-with and contains
+     * probes ({@link #RESULT_UNREADABLE} if the file cannot be read), and the parsed value for
+     * key-value probes ({@link #RESULT_NO_VALUE} if none).
+     *
+     * @param results receives one result per probe; at least {@link #size()} long
+     */
+    public void run(int[] results) {
+        if (results.length < ops.length)
+            throw new IllegalArgumentException("results must hold " + ops.length + " values");
+        if (NDKUtil.tryLoadLibrary()) {
+            if (nativeRunProbes(packed, ops.length, results) == ops.length) return;
+        }
+        runInJava(results);
+    }
+
+    public int[] run() {
+        int[] results = new int[ops.length];
+        run(results);
+        return results;
+    }
+
+    /**
+     * @return true if any result of the batch is 1, e.g. any of a list of paths exists
+     */
+    public static boolean anyMatched(int[] results, int count) {
+        for (int i = 0; i < count; i++) {
+            if (results[i] == 1) return true;
+        }
+        return false;
+    }
+
+    private void runInJava(int[] results) {
+        ProcFs.Buffer buffer = ProcFs.threadBuffer();
+        for (int i = 0; i < ops.length; i++) {
+            if (ops[i] == OP_EXISTS) {
+                results[i] = new File(paths[i]).exists() ? 1 : 0;
+                continue;
+            }
+            if (ProcFs.read(paths[i], buffer) < 0) {
+                results[i] = ops[i] == OP_KEY_VALUE ? RESULT_NO_VALUE : RESULT_UNREADABLE;
+                continue;
+            }
+            byte[] data = buffer.bytes();
+            int length = buffer.length();
+            byte[] arg = args[i];
+            switch (ops[i]) {
+                case OP_STARTS_WITH:
+                    results[i] = length >= arg.length && regionMatches(data, 0, arg) ? 1 : 0;
+                    break;
+                case OP_CONTAINS:
+                    results[i] = indexOf(data, length, arg, 0) >= 0 ? 1 : 0;
+                    break;
+                default:
+                    results[i] = keyValue(data, length, arg);
+                    break;
+            }
+        }
+    }
+
+    private static int keyValue(byte[] data, int length, byte[] key) {
+        for (int start = 0; start + key.length <= length; ) {
+            if (regionMatches(data, start, key)) {
+                int i = start + key.length;
+                while (i < length && (data[i] == ' ' || data[i] == '\t')) i++;
+                boolean negative = i < length && data[i] == '-';
+                if (negative) i++;
+                long value = 0;
+                int digits = 0;
+                while (i < length && data[i] >= '0' && data[i] <= '9' && digits < 10) {
+                    value = value * 10 + (data[i++] - '0');
+                    digits++;
+                }
+                return digits == 0 ? RESULT_NO_VALUE : (int) (negative ? -value : value);
+            }
+            while (start < length && data[start] != '\n') start++;
+            start++;
+        }
+        return RESULT_NO_VALUE;
+    }
+
+    private static boolean regionMatches(byte[] data, int offset, byte[] value) {
+        for (int i = 0; i < value.length; i++) {
+            if (data[offset + i] != value[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] value, int from) {
+        for (int start = from; start + value.length <= length; start++) {
+            if (regionMatches(data, start, value)) return start;
+        }
+        return -1;
+    }
+
+    private static native int nativeRunProbes(byte[] packed, int count, int[] results);
+
+    /**
+     * Collects probes in the order their results are reported.
+     */
+    public static final class Builder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int[] ops = new int[16];
+        private String[] paths = new String[16];
+        private byte[][] args = new byte[16][];
+        private int count;
+
+        public Builder exists(String path) {
+            return add(OP_EXISTS, path, "");
+        }
+
+        public Builder startsWith(String path, String prefix) {
+            return add(OP_STARTS_WITH, path, prefix);
+        }
+
+        public Builder contains(String path, String needle) {
+            return add(OP_CONTAINS, path, needle);
+        }
+
+        /**
+         * @param key start of the line, including its separator, e.g. {@code "TracerPid:"}
+         */
+        public Builder keyValue(String path, String key) {
+            return add(OP_KEY_VALUE, path, key);
+        }
+
+        private Builder add(int op, String path, String arg) {
+            byte[] pathBytes = path.getBytes(ProcFs.UTF_8);
+            byte[] argBytes = arg.getBytes(ProcFs.UTF_8);
+            if (pathBytes.length == 0 || pathBytes.length > MAX_PATH_BYTES)
+                throw new IllegalArgumentException("bad probe path: " + path);
+            if (argBytes.length > MAX_ARG_BYTES)
+                throw new IllegalArgumentException("probe argument longer than " + MAX_ARG_BYTES + " bytes");
+            out.write(op);
+            out.write(pathBytes.length >> 8);
+            out.write(pathBytes.length);
+            out.write(pathBytes, 0, pathBytes.length);
+            out.write(argBytes.length >> 8);
+            out.write(argBytes.length);
+            out.write(argBytes, 0, argBytes.length);
+            if (count == ops.length) {
+                ops = Arrays.copyOf(ops, count * 2);
+                paths = Arrays.copyOf(paths, count * 2);
+                args = Arrays.copyOf(args, count * 2);
+            }
+            ops[count] = op;
+            paths[count] = path;
+            args[count] = argBytes;
+            count++;
+            return this;
+        }
+
+        public ProbeBatch build() {
+            return new ProbeBatch(out.toByteArray(), Arrays.copyOf(ops, count),
+                    Arrays.copyOf(paths, count), Arrays.copyOf(args, count));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.puzzletak.library;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Direct reader for small procfs files.
+ * Files are read straight into a reusable per-thread byte buffer, so no {@code sh}/{@code cat}
+ * process has to be forked just to look at {@code /proc/self/cgroup} or {@code /proc/net/tcp6}.
+ */
+public final class ProcFs {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer(INITIAL_CAPACITY);
+        }
+    };
+
+    private ProcFs() {
+    }
+
+    /**
+     * Growable byte buffer holding the content of the last file read into it.
+     */
+    public static final class Buffer {
+        byte[] data;
+        int length;
+
+        public Buffer(int capacity) {
+            data = new byte[Math.max(capacity, 64)];
+        }
+
+        public byte[] bytes() {
+            return data;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > data.length) {
+                byte[] grown = new byte[Math.max(capacity, data.length * 2)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, 0, length, UTF_8);
+        }
+    }
+
+    /**
+     * @return the calling thread's reusable buffer; its content is replaced by the next read on this thread
+     */
+    public static Buffer threadBuffer() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Reads a whole file into {@code buffer}.
+     * procfs reports a size of 0 for most entries, so the file is read until EOF and the buffer grows as needed.
+     *
+     * @return the number of bytes read, or -1 if the file cannot be read
+     */
+    public static int read(String path, Buffer buffer) {
+        buffer.length = 0;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(path);
+            while (true) {
+                if (buffer.length == buffer.data.length) buffer.ensureCapacity(buffer.length + 1);
+                int read = in.read(buffer.data, buffer.length, buffer.data.length - buffer.length);
+                if (read < 0) break;
+                buffer.length += read;
+            }
+            return buffer.length;
+        } catch (IOException e) {
+            buffer.length = 0;
+            return -1;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a whole file as UTF-8 text, the direct replacement for {@code exec("cat " + path)}.
+     *
+     * @return the file content, or null if the file cannot be read
+     */
+    public static String readString(String path) {
+        Buffer buffer = threadBuffer();
+        if (read(path, buffer) < 0) return null;
+        return buffer.toString();
+    }
+}
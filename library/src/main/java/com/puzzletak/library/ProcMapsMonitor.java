@@ -0,0 +1,178 @@
+package com.puzzletak.library;
+
+import android.util.Log;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches {@code /proc/self/maps} for hook frameworks injected after startup.
+ * <p>
+ * Every tick reads the file into a buffer kept across ticks and first computes a cheap fingerprint:
+ * the line count and a rolling hash of the address ranges. While the fingerprint is unchanged nothing
+ * is parsed and the only allocation is the file stream opened for the read. When it changes, the
+ * file is re-indexed and only modules present in one index but not the other are run through the
+ * signatures, so the listener hears about each newly loaded suspicious module once and, if it is a
+ * {@link RemovalListener}, about each suspicious module that is unmapped again.
+ * <p>
+ * A {@link NativeWatchdog} started with {@code wakeOnAccess} also watches {@code /proc/self/maps}
+ * through inotify, so each tick wakes it for an extra TracerPid read. That is one small read per
+ * tick; keep the tick period well above the watchdog's cost if both run together.
+ */
+public final class ProcMapsMonitor {
+
+    private static final String TAG = "ProcMapsMonitor";
+
+    /**
+     * Receives newly loaded suspicious modules, on the thread running the tick.
+     */
+    public interface Listener {
+        /**
+         * @param query one of the {@code ProcMapsScanner.QUERY_*} ids, or {@code QUERY_NAMES + i} for the i-th watched name
+         * @param path  path of the module that was mapped
+         */
+        void onSuspiciousModuleLoaded(int query, String path);
+    }
+
+    /**
+     * Listener that also hears about suspicious modules being unmapped, e.g. after {@code dlclose}.
+     */
+    public interface RemovalListener extends Listener {
+        /**
+         * @param query same id as reported when the module was loaded
+         * @param path  path of the module that is no longer mapped
+         */
+        void onSuspiciousModuleRemoved(int query, String path);
+    }
+
+    private final String path;
+    private final String[] names;
+    private final Listener listener;
+    private final ProcFs.Buffer buffer = new ProcFs.Buffer(64 * 1024);
+
+    private ProcMapsScanner.Modules modules = new ProcMapsScanner.Modules();
+    private int lineCount = -1;
+    private int rangeHash;
+    private ScheduledFuture<?> task;
+    // Signatures compiled for the pack that was current when they were built.
+    private SignaturePack matcherPack;
+    private SignatureMatcher matcher;
+
+    /**
+     * @param names    extra module names to watch for besides the {@link SignaturePack} hook libraries
+     *                 and virtual packages, compared case-insensitively; may be empty
+     * @param listener receives the suspicious modules found by each tick
+     */
+    public ProcMapsMonitor(String[] names, Listener listener) {
+        this("/proc/self/maps", names, listener);
+    }
+
+    ProcMapsMonitor(String path, String[] names, Listener listener) {
+        if (listener == null) throw new IllegalArgumentException("listener must not be null");
+        this.path = path;
+        this.names = names == null ? new String[0] : names.clone();
+        this.listener = listener;
+        // Fails fast on too many names.
+        ProcMapsScanner.matcher(this.names);
+    }
+
+    /**
+     * Starts ticking on the library's monitor thread; the first tick reports modules that are already loaded.
+     */
+    public synchronized void start(long intervalMillis) {
+        if (task != null) return;
+        task = ProtectorExecutors.monitor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // An exception escaping here would silently cancel every later tick.
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Maps monitor tick failed", e);
+                }
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * @return the index built by the last tick that saw the maps change
+     */
+    public synchronized ProcMapsScanner.Modules getModules() {
+        return modules;
+    }
+
+    /**
+     * Checks the maps once, for callers that drive polling themselves.
+     *
+     * @return the number of events reported, loads and removals
+     */
+    public synchronized int tick() {
+        if (ProcFs.read(path, buffer) < 0) return 0;
+        byte[] data = buffer.bytes();
+        int length = buffer.length();
+
+        int lines = 0;
+        int hash = 0;
+        boolean inRange = true;
+        for (int i = 0; i < length; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                lines++;
+                inRange = true;
+            } else if (inRange) {
+                if (b == ' ') inRange = false;
+                else hash = 31 * hash + b;
+            }
+        }
+        if (lines == lineCount && hash == rangeHash) return 0;
+        lineCount = lines;
+        rangeHash = hash;
+
+        ProcMapsScanner.Modules previous = modules;
+        ProcMapsScanner.Modules current = new ProcMapsScanner.Modules();
+        ProcMapsScanner.parse(data, length, current);
+        modules = current;
+
+        SignaturePack pack = SignaturePack.current();
+        if (pack != matcherPack) {
+            matcher = ProcMapsScanner.matcher(names);
+            matcherPack = pack;
+        }
+        int reported = 0;
+        for (int i = 0; i < current.size(); i++) {
+            if (previous.containsPathOf(current, i)) continue;
+            int fields = current.matchFields(i, matcher);
+            for (int query = 0; fields != 0; query++, fields >>>= 1) {
+                if ((fields & 1) != 0) {
+                    listener.onSuspiciousModuleLoaded(query, current.getPath(i));
+                    reported++;
+                }
+            }
+        }
+        if (listener instanceof RemovalListener) {
+            RemovalListener removalListener = (RemovalListener) listener;
+            for (int i = 0; i < previous.size(); i++) {
+                if (current.containsPathOf(previous, i)) continue;
+                int fields = previous.matchFields(i, matcher);
+                for (int query = 0; fields != 0; query++, fields >>>= 1) {
+                    if ((fields & 1) != 0) {
+                        removalListener.onSuspiciousModuleRemoved(query, previous.getPath(i));
+                        reported++;
+                    }
+                }
+            }
+        }
+        return reported;
+    }
+}
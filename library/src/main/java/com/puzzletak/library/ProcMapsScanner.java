@@ -0,0 +1,289 @@
+package com.puzzletak.library;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass scanner for {@code /proc/self/maps}.
+ * <p>
+ * The file is read into the thread's reusable {@link ProcFs.Buffer} and parsed byte-wise, without a
+ * String per line, into a {@link Modules} index holding each mapped path once. Maps of large apps run
+ * to thousands of lines but only a few hundred distinct files, so every query after the scan walks
+ * the deduplicated index instead of the raw file.
+ */
+public final class ProcMapsScanner {
+
+    // Query ids of Modules.query(); caller supplied names start at QUERY_NAMES.
+    public static final int QUERY_HOOK_LIBRARIES = 0;
+    public static final int QUERY_VIRTUAL_PACKAGES = 1;
+    public static final int QUERY_NAMES = 2;
+    /** The most caller supplied names one query can carry. */
+    public static final int MAX_NAMES = 32 - QUERY_NAMES;
+
+    // Compiled hook library and virtual package signatures of the pack they were built from.
+    private static SignaturePack cachedPack;
+    private static SignatureMatcher cachedMatcher;
+
+    private ProcMapsScanner() {
+    }
+
+    /**
+     * Reads and indexes the current process's memory map.
+     *
+     * @return the index, empty if the file cannot be read
+     */
+    public static Modules scan() {
+        return scan("/proc/self/maps");
+    }
+
+    static Modules scan(String path) {
+        ProcFs.Buffer buffer = ProcFs.threadBuffer();
+        Modules modules = new Modules();
+        if (ProcFs.read(path, buffer) >= 0) parse(buffer.bytes(), buffer.length(), modules);
+        return modules;
+    }
+
+    static void parse(byte[] data, int length, Modules modules) {
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && data[lineEnd] != '\n') lineEnd++;
+            // address perms offset dev inode pathname; the pathname may be missing.
+            int i = lineStart;
+            for (int field = 0; field < 5 && i < lineEnd; field++) {
+                while (i < lineEnd && data[i] != ' ') i++;
+                while (i < lineEnd && data[i] == ' ') i++;
+            }
+            int end = lineEnd;
+            while (end > i && data[end - 1] == ' ') end--;
+            if (end > i) modules.add(data, i, end - i);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * @return the pack signatures plus one query per name, with QUERY_* ids as signature fields
+     */
+    static SignatureMatcher matcher(String... names) {
+        if (names == null || names.length == 0) return defaultMatcher();
+        if (names.length > MAX_NAMES)
+            throw new IllegalArgumentException("at most " + MAX_NAMES + " names per query");
+        SignatureMatcher.Builder builder = addPackSignatures(new SignatureMatcher.Builder(), SignaturePack.current());
+        for (int i = 0; i < names.length; i++) {
+            builder.add(QUERY_NAMES + i, names[i], false, null);
+        }
+        return builder.build();
+    }
+
+    private static synchronized SignatureMatcher defaultMatcher() {
+        SignaturePack pack = SignaturePack.current();
+        if (pack != cachedPack) {
+            cachedMatcher = addPackSignatures(new SignatureMatcher.Builder(), pack).build();
+            cachedPack = pack;
+        }
+        return cachedMatcher;
+    }
+
+    private static SignatureMatcher.Builder addPackSignatures(SignatureMatcher.Builder builder, SignaturePack pack) {
+        for (int i = 0; i < pack.size(SignaturePack.SECTION_LIBRARIES); i++) {
+            builder.add(QUERY_HOOK_LIBRARIES, pack.getPattern(SignaturePack.SECTION_LIBRARIES, i), false,
+                    pack.getLabel(SignaturePack.SECTION_LIBRARIES, i));
+        }
+        for (int i = 0; i < pack.size(SignaturePack.SECTION_PACKAGES); i++) {
+            builder.add(QUERY_VIRTUAL_PACKAGES, pack.getPattern(SignaturePack.SECTION_PACKAGES, i), false,
+                    pack.getLabel(SignaturePack.SECTION_PACKAGES, i));
+        }
+        return builder;
+    }
+
+    /**
+     * Deduplicated index of the paths (and pseudo names such as {@code [stack]}) found in a memory map.
+     */
+    public static final class Modules {
+        // Path bytes of all modules, back to back.
+        private byte[] pool = new byte[16 * 1024];
+        private int poolLength;
+        private int[] offsets = new int[256];
+        private int[] lengths = new int[256];
+        private int[] hashes = new int[256];
+        private int size;
+        // Open addressing table of module index + 1, 0 for an empty slot.
+        private int[] slots = new int[512];
+
+        Modules() {
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String getPath(int index) {
+            return new String(pool, offsets[index], lengths[index], ProcFs.UTF_8);
+        }
+
+        /**
+         * @return the index of the first module whose path contains {@code name}, or -1
+         */
+        public int indexOf(CharSequence name) {
+            for (int i = 0; i < size; i++) {
+                if (contains(i, name)) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Same as {@link #indexOf(CharSequence)}, restricted to shared libraries and jars.
+         */
+        public int indexOfLibrary(CharSequence name) {
+            for (int i = 0; i < size; i++) {
+                if ((endsWith(i, ".so") || endsWith(i, ".jar")) && contains(i, name)) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Runs the hook library and virtual package signatures of the installed {@link SignaturePack}
+         * and any caller supplied names over every module in a single pass.
+         *
+         * @param names extra names to look for, compared case-insensitively; at most {@link #MAX_NAMES}
+         */
+        public Report query(String... names) {
+            SignatureMatcher matcher = matcher(names);
+            int[] hits = new int[QUERY_NAMES + (names == null ? 0 : names.length)];
+            Arrays.fill(hits, -1);
+            int pending = hits.length >= 32 ? -1 : (1 << hits.length) - 1;
+            for (int i = 0; i < size && pending != 0; i++) {
+                int fields = matchFields(i, matcher) & pending;
+                if (fields == 0) continue;
+                for (int query = 0; query < hits.length; query++) {
+                    if ((fields & (1 << query)) != 0) hits[query] = i;
+                }
+                pending &= ~fields;
+            }
+            return new Report(this, hits);
+        }
+
+        int matchFields(int index, SignatureMatcher matcher) {
+            return matcher.matchFields(pool, offsets[index], lengths[index]);
+        }
+
+        /**
+         * @return true if the path of {@code other}'s module {@code index} is also in this index
+         */
+        boolean containsPathOf(Modules other, int index) {
+            int offset = other.offsets[index];
+            int length = other.lengths[index];
+            int hash = other.hashes[index];
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int candidate = slots[slot] - 1;
+                if (hashes[candidate] == hash && equals(candidate, other.pool, offset, length)) return true;
+            }
+            return false;
+        }
+
+        void add(byte[] data, int offset, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) hash = 31 * hash + data[offset + i];
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                int index = slots[slot] - 1;
+                if (hashes[index] == hash && equals(index, data, offset, length)) return;
+                slot = (slot + 1) & mask;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            if (poolLength + length > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(poolLength + length, pool.length * 2));
+            }
+            System.arraycopy(data, offset, pool, poolLength, length);
+            offsets[size] = poolLength;
+            lengths[size] = length;
+            hashes[size] = hash;
+            poolLength += length;
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) rehash();
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int index = 0; index < size; index++) {
+                int slot = hashes[index] & mask;
+                while (slots[slot] != 0) slot = (slot + 1) & mask;
+                slots[slot] = index + 1;
+            }
+        }
+
+        private boolean equals(int index, byte[] data, int offset, int length) {
+            if (lengths[index] != length) return false;
+            int start = offsets[index];
+            for (int i = 0; i < length; i++) {
+                if (pool[start + i] != data[offset + i]) return false;
+            }
+            return true;
+        }
+
+        private boolean endsWith(int index, String suffix) {
+            int length = lengths[index];
+            if (length < suffix.length()) return false;
+            int start = offsets[index] + length - suffix.length();
+            for (int i = 0; i < suffix.length(); i++) {
+                if (pool[start + i] != suffix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private boolean contains(int index, CharSequence name) {
+            int start = offsets[index];
+            int last = lengths[index] - name.length();
+            outer:
+            for (int from = 0; from <= last; from++) {
+                for (int i = 0; i < name.length(); i++) {
+                    if ((pool[start + from + i] & 0xFF) != name.charAt(i)) continue outer;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Outcome of {@link Modules#query(String...)}: the first module hit by each query.
+     */
+    public static final class Report {
+        private final Modules modules;
+        private final int[] hits;
+
+        Report(Modules modules, int[] hits) {
+            this.modules = modules;
+            this.hits = hits;
+        }
+
+        public boolean hasHookLibrary() {
+            return hits[QUERY_HOOK_LIBRARIES] >= 0;
+        }
+
+        public boolean hasVirtualPackage() {
+            return hits[QUERY_VIRTUAL_PACKAGES] >= 0;
+        }
+
+        /**
+         * @param name index of the name in the query
+         */
+        public boolean hasName(int name) {
+            return hits[QUERY_NAMES + name] >= 0;
+        }
+
+        /**
+         * @param query one of the QUERY_* ids, or {@code QUERY_NAMES + i} for the i-th name
+         * @return the path of the first module hit by the query, or null
+         */
+        public String getPath(int query) {
+            return hits[query] < 0 ? null : modules.getPath(hits[query]);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.puzzletak.library;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Enumerates processes by walking {@code /proc/[pid]} directly, instead of forking {@code ps}.
+ * <p>
+ * {@code /proc} is listed once per walk; each {@code status} file is read into a buffer owned by the
+ * walker and its {@code Uid:} line parsed in place, so a walk allocates little beyond the directory
+ * listing. On Android 7+ {@code /proc} is usually mounted with {@code hidepid}, and an app only sees
+ * its own UID's processes, which is exactly what the multi-instance checks need.
+ */
+public final class ProcessWalker {
+
+    /** Returned when a status file cannot be read or has no Uid line. */
+    public static final int UNKNOWN_UID = -1;
+
+    private static final byte[] UID_KEY = {'U', 'i', 'd', ':'};
+
+    /**
+     * Receives the processes of a walk.
+     */
+    public interface Visitor {
+        /**
+         * @param uid real UID of the process
+         * @return false to stop the walk
+         */
+        boolean onProcess(int pid, int uid);
+    }
+
+    private final String procRoot;
+    private final ProcFs.Buffer buffer = new ProcFs.Buffer(2 * 1024);
+    private final StringBuilder path = new StringBuilder(32);
+
+    public ProcessWalker() {
+        this("/proc");
+    }
+
+    ProcessWalker(String procRoot) {
+        this.procRoot = procRoot;
+    }
+
+    /**
+     * Visits every process whose status can be read. Processes exiting during the walk are skipped.
+     *
+     * @return the number of processes visited
+     */
+    public synchronized int walk(Visitor visitor) {
+        String[] entries = new File(procRoot).list();
+        if (entries == null) return 0;
+        int visited = 0;
+        for (String entry : entries) {
+            int pid = parsePid(entry);
+            if (pid <= 0) continue;
+            int uid = readUid(pid);
+            if (uid == UNKNOWN_UID) continue;
+            visited++;
+            if (!visitor.onProcess(pid, uid)) break;
+        }
+        return visited;
+    }
+
+    /**
+     * @return the pids of the processes running as {@code uid}, in {@code /proc} order
+     */
+    public synchronized int[] findPids(final int uid) {
+        final int[][] found = {new int[8]};
+        final int[] count = {0};
+        walk(new Visitor() {
+            @Override
+            public boolean onProcess(int pid, int processUid) {
+                if (processUid == uid) {
+                    if (count[0] == found[0].length) found[0] = Arrays.copyOf(found[0], count[0] * 2);
+                    found[0][count[0]++] = pid;
+                }
+                return true;
+            }
+        });
+        return Arrays.copyOf(found[0], count[0]);
+    }
+
+    /**
+     * @return the real UID of the process, or {@link #UNKNOWN_UID}
+     */
+    public synchronized int readUid(int pid) {
+        if (ProcFs.read(procPath(pid, "status"), buffer) < 0) return UNKNOWN_UID;
+        return parseUid(buffer.bytes(), buffer.length());
+    }
+
+    /**
+     * @return the process name as set in its command line, e.g. {@code com.example:remote}, or null
+     */
+    public synchronized String readName(int pid) {
+        if (ProcFs.read(procPath(pid, "cmdline"), buffer) <= 0) return null;
+        byte[] data = buffer.bytes();
+        int end = 0;
+        while (end < buffer.length() && data[end] != 0) end++;
+        return end == 0 ? null : new String(data, 0, end, ProcFs.UTF_8);
+    }
+
+    private String procPath(int pid, String file) {
+        path.setLength(0);
+        return path.append(procRoot).append('/').append(pid).append('/').append(file).toString();
+    }
+
+    static int parsePid(String name) {
+        int length = name.length();
+        if (length == 0 || length > 9) return -1;
+        int pid = 0;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            pid = pid * 10 + (c - '0');
+        }
+        return pid;
+    }
+
+    static int parseUid(byte[] data, int length) {
+        outer:
+        for (int start = 0; start + UID_KEY.length <= length; start++) {
+            if (start > 0 && data[start - 1] != '\n') continue;
+            for (int i = 0; i < UID_KEY.length; i++) {
+                if (data[start + i] != UID_KEY[i]) continue outer;
+            }
+            // "Uid:" is followed by the real, effective, saved and filesystem UIDs.
+            int i = start + UID_KEY.length;
+            while (i < length && (data[i] == ' ' || data[i] == '\t')) i++;
+            long uid = 0;
+            int digits = 0;
+            while (i < length && data[i] >= '0' && data[i] <= '9' && digits < 10) {
+                uid = uid * 10 + (data[i++] - '0');
+                digits++;
+            }
+            return digits == 0 || uid > Integer.MAX_VALUE ? UNKNOWN_UID : (int) uid;
+        }
+        return UNKNOWN_UID;
+    }
+}
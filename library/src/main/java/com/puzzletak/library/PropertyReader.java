@@ -0,0 +1,75 @@
+package com.puzzletak.library;
+
+import android.annotation.SuppressLint;
+
+import java.lang.reflect.Method;
+
+/**
+ * System property access layer. The hidden {@code SystemProperties.get} accessor is resolved
+ * once per process and reused, instead of being looked up through reflection on every call.
+ */
+public final class PropertyReader {
+
+    private static volatile PropertySource source = SystemPropertySource.INSTANCE;
+
+    private PropertyReader() {
+    }
+
+    /**
+     * Replaces the property backend, e.g. with a map-backed fake in a JVM unit test.
+     *
+     * @param propertySource the new backend, or null to restore the system one
+     */
+    public static void setSource(PropertySource propertySource) {
+        source = propertySource == null ? SystemPropertySource.INSTANCE : propertySource;
+    }
+
+    /**
+     * @return the property value, or null if it is unset or cannot be read
+     */
+    public static String get(String key) {
+        return source.get(key);
+    }
+
+    /**
+     * Reads several properties in one call.
+     *
+     * @return values in the same order as {@code keys}; unreadable entries are null
+     */
+    public static String[] getProperties(String... keys) {
+        PropertySource propertySource = source;
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = propertySource.get(keys[i]);
+        }
+        return values;
+    }
+
+    // MethodHandle is only available from API 26, minSdk is 21, so the resolved Method is cached instead.
+    private static final class SystemPropertySource implements PropertySource {
+        static final SystemPropertySource INSTANCE = new SystemPropertySource();
+
+        private final Method getMethod;
+
+        @SuppressLint("PrivateApi")
+        private SystemPropertySource() {
+            Method method;
+            try {
+                method = Class.forName("android.os.SystemProperties").getMethod("get", String.class);
+            } catch (Exception e) {
+                method = null;
+            }
+            getMethod = method;
+        }
+
+        @Override
+        public String get(String key) {
+            if (getMethod == null) return null;
+            try {
+                return (String) getMethod.invoke(null, key);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+}
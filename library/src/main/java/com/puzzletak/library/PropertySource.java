@@ -0,0 +1,15 @@
+package com.puzzletak.library;
+
+/**
+ * Backend used by {@link PropertyReader} to look up system properties.
+ * <p>
+ * The default implementation reads {@code android.os.SystemProperties}; a plain JVM unit test
+ * can install a map-backed implementation through {@link PropertyReader#setSource(PropertySource)}.
+ */
+public interface PropertySource {
+    /**
+     * @param key property name, e.g. {@code ro.hardware}
+     * @return the property value, or null if it cannot be read
+     */
+    String get(String key);
+}
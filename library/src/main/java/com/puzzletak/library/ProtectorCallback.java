@@ -0,0 +1,11 @@
+package com.puzzletak.library;
+
+/**
+ * Receives the outcome of an asynchronous check started through {@link PuzzleTakProtectorAsync}.
+ * Methods are called on the Executor passed to {@link CheckRequest#setCallback(java.util.concurrent.Executor, ProtectorCallback)}.
+ */
+public interface ProtectorCallback<T> {
+    void onResult(T result);
+
+    void onError(Throwable error);
+}
@@ -0,0 +1,116 @@
+package com.puzzletak.library;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background threads used by the library. All threads are daemons, so an idle
+ * library never keeps the process alive, and idle pool threads are released after a few seconds.
+ */
+final class ProtectorExecutors {
+
+    private ProtectorExecutors() {
+    }
+
+    private static class IoHolder {
+        // Stream drainers block on pipes, so they get their own elastic pool.
+        private static final ThreadPoolExecutor INSTANCE = new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new NamedThreadFactory("PuzzleTak-io"));
+    }
+
+    private static class SignalsHolder {
+        private static final ThreadPoolExecutor INSTANCE = createSignalPool();
+
+        private static ThreadPoolExecutor createSignalPool() {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    SIGNAL_THREADS, SIGNAL_THREADS, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(SIGNAL_QUEUE_CAPACITY),
+                    new NamedThreadFactory("PuzzleTak-signal"));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    static final int SIGNAL_THREADS = 3;
+    static final int SIGNAL_QUEUE_CAPACITY = 32;
+
+    /**
+     * Small bounded pool for evaluating independent detection signals concurrently.
+     * Submissions beyond its queue capacity are rejected rather than spawning more threads.
+     */
+    static ThreadPoolExecutor signals() {
+        return SignalsHolder.INSTANCE;
+    }
+
+    private static class ChecksHolder {
+        private static final ThreadPoolExecutor INSTANCE = createChecksPool();
+
+        private static ThreadPoolExecutor createChecksPool() {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    CHECK_THREADS, CHECK_THREADS, 10, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NamedThreadFactory("PuzzleTak-check"));
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    static final int CHECK_THREADS = 2;
+
+    /**
+     * Pool running the asynchronous public checks. Kept separate from {@link #signals()} so a
+     * check that fans out into signals can never starve the pool it is waiting on.
+     */
+    static ThreadPoolExecutor checks() {
+        return ChecksHolder.INSTANCE;
+    }
+
+    /**
+     * Unbounded pool for short blocking I/O such as draining process pipes.
+     */
+    static ThreadPoolExecutor io() {
+        return IoHolder.INSTANCE;
+    }
+
+    private static class MonitorHolder {
+        private static final ScheduledThreadPoolExecutor INSTANCE = createMonitorPool();
+
+        private static ScheduledThreadPoolExecutor createMonitorPool() {
+            ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(
+                    1, new NamedThreadFactory("PuzzleTak-monitor"));
+            pool.setRemoveOnCancelPolicy(true);
+            pool.setKeepAliveTime(10, TimeUnit.SECONDS);
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * Single thread running periodic monitors; it exits when no monitor is scheduled.
+     */
+    static ScheduledThreadPoolExecutor monitor() {
+        return MonitorHolder.INSTANCE;
+    }
+
+    static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
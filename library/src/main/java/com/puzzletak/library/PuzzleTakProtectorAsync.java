@@ -0,0 +1,287 @@
+package com.puzzletak.library;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Non-blocking counterpart of {@link PuzzleTakProtectorLib}.
+ * <p>
+ * Every check runs on a small background pool and returns a {@link CheckRequest}, which can be
+ * waited on like a Future or given a callback plus the Executor to deliver it on:
+ * <pre>
+ * PuzzleTakProtectorAsync.checkIsRoot()
+ *         .setCallback(PuzzleTakProtectorAsync.mainThreadExecutor(), callback);
+ * </pre>
+ * Calling the same check again while it is still running joins the running one instead of
+ * starting a second copy.
+ */
+public class PuzzleTakProtectorAsync {
+
+    private static final ConcurrentMap<String, CheckRequest.Shared<?>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static volatile Executor workExecutor;
+
+    private PuzzleTakProtectorAsync() {
+    }
+
+    private static class MainThreadHolder {
+        private static final Executor INSTANCE = new Executor() {
+            private final Handler handler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    /**
+     * @return an Executor that posts to the main thread, for delivering callbacks to UI code
+     */
+    public static Executor mainThreadExecutor() {
+        return MainThreadHolder.INSTANCE;
+    }
+
+    /**
+     * Replaces the Executor the checks run on.
+     *
+     * @param executor the new executor, or null to restore the library's bounded default pool
+     */
+    public static void setWorkExecutor(Executor executor) {
+        workExecutor = executor;
+    }
+
+    private static <T> CheckRequest<T> submit(String key, Callable<T> work) {
+        Executor executor = workExecutor;
+        if (executor == null) executor = ProtectorExecutors.checks();
+        return CheckRequest.obtain(IN_FLIGHT, key, work, executor);
+    }
+
+    public static CheckRequest<String> checkSignature(final Context context) {
+        return submit("checkSignature", new Callable<String>() {
+            @Override
+            public String call() {
+                return PuzzleTakProtectorLib.checkSignature(context);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsDebug(final Context context) {
+        return submit("checkIsDebug", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsDebug(context);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsPortUsing(final String host, final int port) {
+        return submit("checkIsPortUsing:" + host + ":" + port, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsPortUsing(host, port);
+            }
+        });
+    }
+
+    public static CheckRequest<PortScanner.Result> scanPorts(final String host, final int[] ports) {
+        return submit("scanPorts:" + host + ":" + Arrays.toString(ports), new Callable<PortScanner.Result>() {
+            @Override
+            public PortScanner.Result call() throws UnknownHostException {
+                return PuzzleTakProtectorLib.scanPorts(host, ports);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsFridaPortOpen() {
+        return submit("checkIsFridaPortOpen", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsFridaPortOpen();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsRoot() {
+        return submit("checkIsRoot", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsRoot();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsXposedExist() {
+        return submit("checkIsXposedExist", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsXposedExist();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkXposedExistAndDisableIt() {
+        return submit("checkXposedExistAndDisableIt", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkXposedExistAndDisableIt();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkHasLoadSO(final String soName) {
+        return submit("checkHasLoadSO:" + soName, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkHasLoadSO(soName);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkHasHookFrameworkLibrary() {
+        return submit("checkHasHookFrameworkLibrary", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkHasHookFrameworkLibrary();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsBeingTracedByJava() {
+        return submit("checkIsBeingTracedByJava", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsBeingTracedByJava();
+            }
+        });
+    }
+
+    /**
+     * Starts the native watchdog off the calling thread, loading the native library there.
+     *
+     * @return whether the watchdog is running once the start has been attempted
+     */
+    public static CheckRequest<Boolean> checkIsBeingTracedByC() {
+        return submit("checkIsBeingTracedByC", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                PuzzleTakProtectorLib.checkIsBeingTracedByC();
+                return NativeWatchdog.isRunning();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkFilesExist(final String[] files) {
+        return submit("checkFilesExist:" + Arrays.toString(files), new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkFilesExist(files);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> isBlueStacks() {
+        return submit("isBlueStacks", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.isBlueStacks();
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkTelephonyManager(final Context context) {
+        return submit("checkTelephonyManager", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkTelephonyManager(context);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsRunningInEmulator(final Context context) {
+        return submit("checkIsRunningInEmulator", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsRunningInEmulator(context, null);
+            }
+        });
+    }
+
+    public static CheckRequest<Integer> checkIsRunningInEmulatorPT(final Context context) {
+        return submit("checkIsRunningInEmulatorPT", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return PuzzleTakProtectorLib.checkIsRunningInEmulatorPT(context, null);
+            }
+        });
+    }
+
+    /**
+     * @return the full emulator scan, from which every readSysProperty* view can be derived
+     */
+    public static CheckRequest<EmulatorSnapshot> scanEmulator(final Context context) {
+        return submit("scanEmulator", new Callable<EmulatorSnapshot>() {
+            @Override
+            public EmulatorSnapshot call() {
+                return EmulatorSuperCheckUtil.getSingleInstance().scan(context);
+            }
+        });
+    }
+
+    public static CheckRequest<List<Map<String, Object>>> readSysPropertyPTDetailed(final Context context) {
+        return submit("readSysPropertyPTDetailed", new Callable<List<Map<String, Object>>>() {
+            @Override
+            public List<Map<String, Object>> call() {
+                final Object[] details = new Object[1];
+                PuzzleTakProtectorLib.readSysPropertyPTDetailed(context, new EmulatorDetailsCallback() {
+                    @Override
+                    public void detailsEmulator(List<Map<String, Object>> emulatorInfo) {
+                        details[0] = emulatorInfo;
+                    }
+                });
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> result = (List<Map<String, Object>>) details[0];
+                return result;
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsRunningInEmulatorPTResult(final Context context) {
+        return submit("checkIsRunningInEmulatorPTResult", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsRunningInEmulatorPTResult(context, null);
+            }
+        });
+    }
+
+    public static CheckRequest<Boolean> checkIsRunningInVirtualApk(final String uniqueMsg) {
+        return submit("checkIsRunningInVirtualApk:" + uniqueMsg, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return PuzzleTakProtectorLib.checkIsRunningInVirtualApk(uniqueMsg, null);
+            }
+        });
+    }
+
+    public static CheckRequest<MultiInstanceDetector.Report> checkIsMultiInstance(final Context context,
+                                                                                  final String uniqueMsg,
+                                                                                  final boolean fastVerdict) {
+        return submit("checkIsMultiInstance:" + uniqueMsg + ":" + fastVerdict, new Callable<MultiInstanceDetector.Report>() {
+            @Override
+            public MultiInstanceDetector.Report call() {
+                return PuzzleTakProtectorLib.checkIsMultiInstance(context, uniqueMsg, fastVerdict);
+            }
+        });
+    }
+}
@@ -5,6 +5,7 @@ import android.telephony.TelephonyManager;
 import android.util.Pair;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.List;
 
@@ -33,6 +34,28 @@ public class PuzzleTakProtectorLib {
         }
     }
 
+    /**
+     * Probes all ports at once; see {@link PortScanner}.
+     */
+    public static PortScanner.Result scanPorts(String host, int[] ports) throws UnknownHostException {
+        return PortScanner.scan(host, ports);
+    }
+
+    /**
+     * Looks the frida-server ports up in the socket table, and only connects to them where the
+     * table cannot be read.
+     */
+    public static boolean checkIsFridaPortOpen() {
+        SocketTable sockets = SocketTable.read();
+        if (sockets.isReadable()) return sockets.isAnyListening(PortScanner.FRIDA_PORTS);
+        try {
+            return PortScanner.scan(null, PortScanner.FRIDA_PORTS).anyOpen();
+        } catch (UnknownHostException e) {
+            // Loopback is never looked up.
+            return false;
+        }
+    }
+
     public static boolean checkIsRoot() {
         return SecurityCheckUtil.getSingleInstance().isRoot();
     }
@@ -49,30 +72,48 @@ public class PuzzleTakProtectorLib {
         return SecurityCheckUtil.getSingleInstance().hasReadProcMaps(soName);
     }
 
+    public static boolean checkHasHookFrameworkLibrary() {
+        return SecurityCheckUtil.getSingleInstance().hasHookFrameworkLibrary();
+    }
+
     public static boolean checkIsBeingTracedByJava() {
         return SecurityCheckUtil.getSingleInstance().readProcStatus();
     }
 
+    /**
+     * Starts the native anti-trace watchdog, polling every 5 s. Detections go to the listener set with
+     * {@link NativeWatchdog#setListener(NativeWatchdog.Listener)}; by default they are only logged,
+     * set {@link NativeWatchdog#EXIT_POLICY} to terminate the process as earlier versions did.
+     */
     public static void checkIsBeingTracedByC() {
-        NDKUtil.loadLibrariesOnce(null);
-//        NDKUtil.loadLibraryByName("antitrace");
+        NativeWatchdog.start(NativeWatchdog.DEFAULT_INTERVAL_MILLIS, true);
     }
 
+    // Probe for the last list passed to checkFilesExist, so that repeated checks hit its cache.
+    private static PathProbe filesProbe;
+
     public static boolean checkFilesExist(String[] files) {
-        for (String filePath : files) {
-            File file = new File(filePath);
-            if (file.exists()) {
-                return true;
+        if (files.length == 0) return false;
+        PathProbe probe;
+        synchronized (PuzzleTakProtectorLib.class) {
+            if (filesProbe == null || !filesProbe.hasPaths(files)) {
+                filesProbe = new PathProbe(files, PathProbe.DEFAULT_NEGATIVE_TTL_MILLIS);
             }
+            probe = filesProbe;
         }
-        return false;
+        return probe.anyExists();
     }
 
     public static boolean isBlueStacks() {
-        String[] BLUE_STACKS_FILES = {
-                "/mnt/windows/BstSharedFolder"
-        };
-        return checkFilesExist(BLUE_STACKS_FILES);
+        return PathProbe.forSection(SignaturePack.SECTION_EMULATOR_FILES).anyExists();
+    }
+
+    /**
+     * Replaces the built-in package, path, property and library signatures with a newer pack,
+     * e.g. one downloaded by the app. Takes effect for every check started afterwards.
+     */
+    public static SignaturePack installSignaturePack(File pack) throws IOException {
+        return SignaturePack.install(pack);
     }
 
     public static boolean checkTelephonyManager(Context context){
@@ -98,7 +139,27 @@ public class PuzzleTakProtectorLib {
         return EmulatorSuperCheckUtil.getSingleInstance().readSysPropertyPTResult(context, callback);
     }
 
+    public static boolean checkIsRunningInEmulatorFast(Context context, EmulatorSuperCheckCallback callback) {
+        return EmulatorSuperCheckUtil.getSingleInstance().readSysPropertyFast(context, callback);
+    }
+
+    public static boolean checkIsRunningInEmulatorParallel(Context context, long timeoutMillis, EmulatorSuperCheckCallback callback) {
+        return EmulatorSuperCheckUtil.getSingleInstance().readSysPropertyParallel(context, timeoutMillis, callback);
+    }
+
     public static boolean checkIsRunningInVirtualApk(String uniqueMsg, VirtualCheckCallback callback) {
         return VirtualApkCheckUtil.getSingleInstance().checkByCreateLocalServerSocket(uniqueMsg, callback);
     }
+
+    /**
+     * Runs every multi-instance check at once; see {@link MultiInstanceDetector}.
+     *
+     * @param fastVerdict stop at the first suspect check
+     */
+    public static MultiInstanceDetector.Report checkIsMultiInstance(Context context, String uniqueMsg, boolean fastVerdict) {
+        return new MultiInstanceDetector(context)
+                .setUniqueMsg(uniqueMsg)
+                .setFastVerdict(fastVerdict)
+                .detect(null);
+    }
 }
@@ -0,0 +1,348 @@
+package com.puzzletak.library;
+
+import android.content.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static com.puzzletak.library.CheckResult.RESULT_EMULATOR;
+import static com.puzzletak.library.CheckResult.RESULT_MAYBE_EMULATOR;
+
+/**
+ * Compiled emulator scoring model: a table of rules (signal, matcher, threshold, weight, cost)
+ * flattened into parallel int arrays, plus the verdict threshold.
+ * <p>
+ * A device is considered an emulator when the sum of the weights of the matching rules is
+ * greater than {@link #verdictThreshold}. Scoring walks the arrays only and allocates nothing.
+ * <p>
+ * Models can be loaded from a compact big-endian byte format (see {@link #fromBytes(byte[])}),
+ * so weights and thresholds can be tuned per market without a new library build.
+ * Made with ❤ by puzzletak
+ */
+public final class ScoringModel {
+
+    // Signal ids, the index of each value in a signal vector.
+    // Property signals hold a CheckResult result code, feature signals hold 1 (present) or 0.
+    public static final int SIGNAL_HARDWARE = 0;
+    public static final int SIGNAL_HOST = 1;
+    public static final int SIGNAL_FLAVOR = 2;
+    public static final int SIGNAL_MODEL = 3;
+    public static final int SIGNAL_MANUFACTURER = 4;
+    public static final int SIGNAL_BOARD = 5;
+    public static final int SIGNAL_PLATFORM = 6;
+    public static final int SIGNAL_BASEBAND = 7;
+    public static final int SIGNAL_SENSOR_COUNT = 8;
+    public static final int SIGNAL_USER_APP_COUNT = 9;
+    public static final int SIGNAL_CAMERA = 10;
+    public static final int SIGNAL_CAMERA_FLASH = 11;
+    public static final int SIGNAL_BLUETOOTH = 12;
+    public static final int SIGNAL_CGROUP = 13;
+    public static final int SIGNAL_COUNT = 14;
+
+    /** Value of a signal that could not be collected; it never matches any rule. */
+    public static final int UNKNOWN = -1;
+
+    // Matchers comparing a signal value with the rule threshold.
+    public static final int MATCH_EQUAL = 0;
+    public static final int MATCH_NOT_EQUAL = 1;
+    public static final int MATCH_AT_MOST = 2;
+    public static final int MATCH_AT_LEAST = 3;
+
+    private static final int MAGIC = 0x5054534D; // "PTSM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int RULE_SIZE = 10;
+
+    private static final ScoringModel DEFAULT = createDefault();
+
+    public final int verdictThreshold;
+
+    // One entry per rule, sorted by ascending cost.
+    private final int[] signals;
+    private final int[] matchers;
+    private final int[] thresholds;
+    private final int[] weights;
+    private final int[] costs;
+    // remainingWeight[i] / remainingPenalty[i]: the most the score can still grow / shrink
+    // once rules [0, i) are evaluated.
+    private final int[] remainingWeight;
+    private final int[] remainingPenalty;
+
+    private ScoringModel(int verdictThreshold, int[] signals, int[] matchers, int[] thresholds,
+                         int[] weights, int[] costs) {
+        int count = signals.length;
+        for (int i = 0; i < count; i++) {
+            if (signals[i] < 0 || signals[i] >= SIGNAL_COUNT)
+                throw new IllegalArgumentException("unknown signal " + signals[i]);
+            if (matchers[i] < MATCH_EQUAL || matchers[i] > MATCH_AT_LEAST)
+                throw new IllegalArgumentException("unknown matcher " + matchers[i]);
+        }
+        // Insertion sort by cost keeps rules of equal cost in table order.
+        for (int i = 1; i < count; i++) {
+            for (int j = i; j > 0 && costs[j - 1] > costs[j]; j--) {
+                swap(signals, j);
+                swap(matchers, j);
+                swap(thresholds, j);
+                swap(weights, j);
+                swap(costs, j);
+            }
+        }
+        this.verdictThreshold = verdictThreshold;
+        this.signals = signals;
+        this.matchers = matchers;
+        this.thresholds = thresholds;
+        this.weights = weights;
+        this.costs = costs;
+        this.remainingWeight = new int[count + 1];
+        this.remainingPenalty = new int[count + 1];
+        for (int i = count - 1; i >= 0; i--) {
+            remainingWeight[i] = remainingWeight[i + 1] + Math.max(0, weights[i]);
+            remainingPenalty[i] = remainingPenalty[i + 1] + Math.min(0, weights[i]);
+        }
+    }
+
+    private static void swap(int[] array, int j) {
+        int tmp = array[j];
+        array[j] = array[j - 1];
+        array[j - 1] = tmp;
+    }
+
+    /**
+     * The built-in model. A definite property match weighs more than the verdict threshold on its own,
+     * a missing property weighs 1 (4 for the baseband), every other suspicious signal weighs 1.
+     */
+    public static ScoringModel getDefault() {
+        return DEFAULT;
+    }
+
+    private static ScoringModel createDefault() {
+        Builder builder = new Builder(3);
+        int[] properties = {SIGNAL_HARDWARE, SIGNAL_HOST, SIGNAL_FLAVOR, SIGNAL_MODEL,
+                SIGNAL_MANUFACTURER, SIGNAL_BOARD, SIGNAL_PLATFORM, SIGNAL_BASEBAND};
+        for (int signal : properties) {
+            builder.addRule(signal, MATCH_EQUAL, RESULT_EMULATOR, 4, 1);
+            // Baseband info being null strongly indicates an emulator.
+            builder.addRule(signal, MATCH_EQUAL, RESULT_MAYBE_EMULATOR, signal == SIGNAL_BASEBAND ? 4 : 1, 1);
+        }
+        builder.addRule(SIGNAL_CAMERA, MATCH_EQUAL, 0, 1, 2);
+        builder.addRule(SIGNAL_BLUETOOTH, MATCH_EQUAL, 0, 1, 2);
+        builder.addRule(SIGNAL_SENSOR_COUNT, MATCH_AT_MOST, 3, 1, 3);
+        builder.addRule(SIGNAL_CGROUP, MATCH_EQUAL, RESULT_MAYBE_EMULATOR, 1, 4);
+        builder.addRule(SIGNAL_USER_APP_COUNT, MATCH_AT_MOST, 1, 1, 5);
+        return builder.build();
+    }
+
+    /**
+     * Scores a complete signal vector.
+     *
+     * @param signalValues values indexed by the SIGNAL_* ids, {@link #UNKNOWN} for missing ones
+     */
+    public int score(int[] signalValues) {
+        int score = 0;
+        for (int i = 0; i < signals.length; i++) {
+            if (matches(i, signalValues[signals[i]])) score += weights[i];
+        }
+        return score;
+    }
+
+    public boolean isEmulator(int score) {
+        return score > verdictThreshold;
+    }
+
+    /**
+     * @return true if any positively weighted rule on {@code signal} matches {@code value}
+     */
+    public boolean isSuspicious(int signal, int value) {
+        for (int i = 0; i < signals.length; i++) {
+            if (signals[i] == signal && weights[i] > 0 && matches(i, value)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lets counters stop early: once a count exceeds every {@link #MATCH_AT_MOST} threshold on the
+     * signal, its exact value no longer changes the score.
+     *
+     * @return the smallest count no rule on {@code signal} tells apart from a larger one, or
+     * {@link Integer#MAX_VALUE} if some other matcher reads the exact value
+     */
+    public int countLimit(int signal) {
+        int limit = 0;
+        for (int i = 0; i < signals.length; i++) {
+            if (signals[i] != signal) continue;
+            if (matchers[i] != MATCH_AT_MOST || thresholds[i] == Integer.MAX_VALUE) return Integer.MAX_VALUE;
+            limit = Math.max(limit, thresholds[i] + 1);
+        }
+        return limit;
+    }
+
+    /**
+     * Supplies signal values on demand, so costly signals are only collected when the verdict still depends on them.
+     */
+    public interface SignalReader {
+        int read(int signal);
+    }
+
+    /**
+     * Evaluates rules cheapest first and stops once the remaining rules can no longer move the
+     * score across {@link #verdictThreshold} in either direction.
+     *
+     * @return the score reached when the verdict was decided; pass it to {@link #isEmulator(int)}
+     */
+    public int scoreUntilDecided(SignalReader reader) {
+        int score = 0;
+        for (int i = 0; i < signals.length; i++) {
+            if (score + remainingPenalty[i] > verdictThreshold) break;
+            if (score + remainingWeight[i] <= verdictThreshold) break;
+            if (matches(i, reader.read(signals[i]))) score += weights[i];
+        }
+        return score;
+    }
+
+    private boolean matches(int rule, int value) {
+        if (value == UNKNOWN) return false;
+        switch (matchers[rule]) {
+            case MATCH_EQUAL:
+                return value == thresholds[rule];
+            case MATCH_NOT_EQUAL:
+                return value != thresholds[rule];
+            case MATCH_AT_MOST:
+                return value <= thresholds[rule];
+            case MATCH_AT_LEAST:
+                return value >= thresholds[rule];
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Decodes a model.
+     * <p>
+     * Layout (big-endian): int magic "PTSM", short version (1), short rule count,
+     * int verdict threshold, then per rule: byte signal, byte matcher, short weight,
+     * int threshold, short cost.
+     *
+     * @throws IllegalArgumentException if the data is not a valid model
+     */
+    public static ScoringModel fromBytes(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IllegalArgumentException("not a scoring model");
+            int version = buffer.getShort();
+            if (version != VERSION)
+                throw new IllegalArgumentException("unsupported scoring model version " + version);
+            int count = buffer.getShort() & 0xFFFF;
+            Builder builder = new Builder(buffer.getInt());
+            for (int i = 0; i < count; i++) {
+                int signal = buffer.get();
+                int matcher = buffer.get();
+                int weight = buffer.getShort();
+                int threshold = buffer.getInt();
+                int cost = buffer.getShort();
+                builder.addRule(signal, matcher, threshold, weight, cost);
+            }
+            return builder.build();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated scoring model");
+        }
+    }
+
+    /**
+     * Reads a model shipped as an app asset.
+     */
+    public static ScoringModel fromAsset(Context context, String assetName) throws IOException {
+        InputStream in = context.getAssets().open(assetName);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[512];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return fromBytes(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Encodes this model in the format read by {@link #fromBytes(byte[])}.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + RULE_SIZE * signals.length);
+        buffer.putInt(MAGIC)
+                .putShort((short) VERSION)
+                .putShort((short) signals.length)
+                .putInt(verdictThreshold);
+        for (int i = 0; i < signals.length; i++) {
+            buffer.put((byte) signals[i])
+                    .put((byte) matchers[i])
+                    .putShort((short) weights[i])
+                    .putInt(thresholds[i])
+                    .putShort((short) costs[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Assembles a model rule by rule.
+     */
+    public static final class Builder {
+        private final int verdictThreshold;
+        private int[] signals = new int[24];
+        private int[] matchers = new int[24];
+        private int[] thresholds = new int[24];
+        private int[] weights = new int[24];
+        private int[] costs = new int[24];
+        private int count;
+
+        /**
+         * @param verdictThreshold scores strictly greater than this are an emulator verdict
+         */
+        public Builder(int verdictThreshold) {
+            this.verdictThreshold = verdictThreshold;
+        }
+
+        /**
+         * @param signal    one of the SIGNAL_* ids
+         * @param matcher   one of the MATCH_* ids
+         * @param threshold value the signal is compared with
+         * @param weight    added to the score when the rule matches
+         * @param cost      relative cost of collecting the signal; cheaper rules are evaluated first
+         */
+        public Builder addRule(int signal, int matcher, int threshold, int weight, int cost) {
+            if (count == signals.length) {
+                int capacity = count * 2;
+                signals = copyOf(signals, capacity);
+                matchers = copyOf(matchers, capacity);
+                thresholds = copyOf(thresholds, capacity);
+                weights = copyOf(weights, capacity);
+                costs = copyOf(costs, capacity);
+            }
+            signals[count] = signal;
+            matchers[count] = matcher;
+            thresholds[count] = threshold;
+            weights[count] = weight;
+            costs[count] = cost;
+            count++;
+            return this;
+        }
+
+        public ScoringModel build() {
+            return new ScoringModel(verdictThreshold, copyOf(signals, count), copyOf(matchers, count),
+                    copyOf(thresholds, count), copyOf(weights, count), copyOf(costs, count));
+        }
+
+        private static int[] copyOf(int[] array, int length) {
+            int[] copy = new int[length];
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+            return copy;
+        }
+    }
+}
+
+// Made with ❤ by puzzletak
@@ -12,21 +12,12 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
-import android.os.Process;
 import android.util.Log;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
-import java.io.IOException;
 import java.lang.reflect.Field;
-import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
 import java.util.concurrent.ThreadPoolExecutor;
 
 public class SecurityCheckUtil {
@@ -103,14 +94,7 @@ public class SecurityCheckUtil {
      * @throws UnknownHostException
      */
     public boolean isPortUsing(String host, int port) throws UnknownHostException {
-        boolean flag = false;
-        InetAddress theAddress = InetAddress.getByName(host);
-        try {
-            Socket socket = new Socket(theAddress, port);
-            flag = true;
-        } catch (IOException e) {
-        }
-        return flag;
+        return PortScanner.isOpen(host, port);
     }
 
     /**
@@ -137,20 +121,7 @@ public class SecurityCheckUtil {
     }
 
     private boolean isSUExist() {
-        File file = null;
-        String[] paths = {"/sbin/su",
-                "/system/bin/su",
-                "/system/xbin/su",
-                "/data/local/xbin/su",
-                "/data/local/bin/su",
-                "/system/sd/xbin/su",
-                "/system/bin/failsafe/su",
-                "/data/local/su"};
-        for (String path : paths) {
-            file = new File(path);
-            if (file.exists()) return true;
-        }
-        return false;
+        return PathProbe.forSection(SignaturePack.SECTION_SU_PATHS).anyExists();
     }
 
     private static final String XPOSED_HELPERS = "de.robv.android.xposed.XposedHelpers";
@@ -226,23 +197,17 @@ public class SecurityCheckUtil {
      * @return true if the library is found.
      */
     public boolean hasReadProcMaps(String paramString) {
-        try {
-            Set<String> libraries = new HashSet<>();
-            BufferedReader reader =
-                    new BufferedReader(new FileReader("/proc/" + Process.myPid() + "/maps"));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.endsWith(".so") || line.endsWith(".jar")) {
-                    libraries.add(line.substring(line.lastIndexOf(" ") + 1));
-                }
-            }
-            reader.close();
-            for (String lib : libraries) {
-                if (lib.contains(paramString)) return true;
-            }
-        } catch (Exception e) {
-        }
-        return false;
+        return ProcMapsScanner.scan().indexOfLibrary(paramString) >= 0;
+    }
+
+    /**
+     * Detect if a hooking framework library (Frida, Xposed, Substrate, ... as listed in the installed
+     * {@link SignaturePack}) is mapped into the process.
+     *
+     * @return true if such a library is found.
+     */
+    public boolean hasHookFrameworkLibrary() {
+        return ProcMapsScanner.scan().query().hasHookLibrary();
     }
 
     /**
@@ -251,22 +216,7 @@ public class SecurityCheckUtil {
      * @return true if being debugged.
      */
     public boolean readProcStatus() {
-        try {
-            BufferedReader reader =
-                    new BufferedReader(new FileReader("/proc/" + Process.myPid() + "/status"));
-            String tracerPid = "";
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("TracerPid")) {
-                    tracerPid = line.substring(line.indexOf(":") + 1).trim();
-                    break;
-                }
-            }
-            reader.close();
-            return !"0".equals(tracerPid);
-        } catch (Exception e) {
-            return false;
-        }
+        return TracerPidProbe.getInstance().read() > 0;
     }
 
     /**
@@ -0,0 +1,262 @@
+package com.puzzletak.library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-pattern matcher for emulator signature strings.
+ * <p>
+ * All signatures are compiled into a single Aho–Corasick automaton whose failure links are
+ * folded into a dense transition table, so a value is matched against every signature in one
+ * linear pass, however many signatures there are. ASCII letters are folded to lower case while
+ * scanning, so values never need to be lower-cased (and copied) first.
+ * Made with ❤ by puzzletak
+ */
+public final class SignatureMatcher {
+
+    /** Field of a signature that applies to any scanned value. */
+    public static final int ANY_FIELD = -1;
+
+    /**
+     * One known-bad string.
+     */
+    public static final class Signature {
+        /** Field the signature applies to, e.g. a {@code ScoringModel.SIGNAL_*} property id, or {@link #ANY_FIELD}. */
+        public final int field;
+        /** Lower-case pattern. */
+        public final String pattern;
+        /** True if the whole value must equal the pattern, false if containing it is enough. */
+        public final boolean exact;
+        /** Human readable name of what the signature identifies, e.g. "Nox Emulator". */
+        public final String label;
+
+        Signature(int field, String pattern, boolean exact, String label) {
+            this.field = field;
+            this.pattern = pattern;
+            this.exact = exact;
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label == null ? pattern : label + " (" + pattern + ")";
+        }
+    }
+
+    private final Signature[] signatures;
+    // Maps a folded ASCII char to its alphabet class; class 0 is "not used by any pattern".
+    private final byte[] charClass;
+    private final int alphabetSize;
+    // transitions[state * alphabetSize + class] -> next state, failure links already applied.
+    private final int[] transitions;
+    // First signature ending in a state, or -1.
+    private final int[] output;
+    // Next signature ending in the same state, indexed by signature id, or -1.
+    private final int[] nextOutput;
+    // Nearest proper suffix state that ends a signature, or -1.
+    private final int[] suffixOutput;
+
+    private SignatureMatcher(Signature[] signatures, byte[] charClass, int alphabetSize,
+                             int[] transitions, int[] output, int[] nextOutput, int[] suffixOutput) {
+        this.signatures = signatures;
+        this.charClass = charClass;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.output = output;
+        this.nextOutput = nextOutput;
+        this.suffixOutput = suffixOutput;
+    }
+
+    public int size() {
+        return signatures.length;
+    }
+
+    public Signature getSignature(int id) {
+        return signatures[id];
+    }
+
+    /**
+     * Matches {@code value} against every signature of {@code field} (and every {@link #ANY_FIELD} signature).
+     *
+     * @return the id of the first signature hit, or -1; the scan allocates nothing
+     */
+    public int match(int field, CharSequence value) {
+        if (value == null) return -1;
+        int length = value.length();
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * alphabetSize + classOf(value.charAt(i))];
+            int id = accept(state, field, i + 1 == length, length);
+            if (id >= 0) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Same as {@link #match(int, CharSequence)} over raw bytes, e.g. a line of a procfs file.
+     */
+    public int match(int field, byte[] data, int offset, int length) {
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * alphabetSize + classOf((char) (data[offset + i] & 0xFF))];
+            int id = accept(state, field, i + 1 == length, length);
+            if (id >= 0) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Matches raw bytes against every signature at once and reports which fields were hit, so one pass
+     * can answer several independent queries (one field per query). Only fields 0 to 31 are reported.
+     *
+     * @return a bit mask with bit {@code f} set if some signature of field {@code f} matched
+     */
+    public int matchFields(byte[] data, int offset, int length) {
+        int fields = 0;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * alphabetSize + classOf((char) (data[offset + i] & 0xFF))];
+            for (int s = output[state] >= 0 ? state : suffixOutput[state]; s > 0; s = suffixOutput[s]) {
+                for (int id = output[s]; id >= 0; id = nextOutput[id]) {
+                    Signature signature = signatures[id];
+                    if (signature.field < 0 || signature.field >= 32) continue;
+                    if (signature.exact && (i + 1 != length || signature.pattern.length() != length)) continue;
+                    fields |= 1 << signature.field;
+                }
+            }
+        }
+        return fields;
+    }
+
+    // Returns the first signature ending in state (or in one of its suffix states) that
+    // applies to the field; exact signatures only count when they span the whole value.
+    private int accept(int state, int field, boolean atEnd, int length) {
+        for (int s = output[state] >= 0 ? state : suffixOutput[state]; s > 0; s = suffixOutput[s]) {
+            for (int id = output[s]; id >= 0; id = nextOutput[id]) {
+                Signature signature = signatures[id];
+                if (signature.field != field && signature.field != ANY_FIELD) continue;
+                if (signature.exact && (!atEnd || signature.pattern.length() != length)) continue;
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private int classOf(char c) {
+        if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+        return c < 128 ? charClass[c] : 0;
+    }
+
+    /**
+     * Collects signatures and compiles them into a matcher.
+     */
+    public static final class Builder {
+        private final List<Signature> signatures = new ArrayList<>();
+
+        /**
+         * @param field   the field the signature applies to, or {@link #ANY_FIELD}
+         * @param pattern ASCII pattern, compared case-insensitively
+         * @param exact   true if the whole value must equal the pattern
+         * @param label   optional description of what the signature identifies
+         */
+        public Builder add(int field, String pattern, boolean exact, String label) {
+            if (pattern == null || pattern.isEmpty())
+                throw new IllegalArgumentException("pattern must not be empty");
+            StringBuilder folded = new StringBuilder(pattern.length());
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c >= 128)
+                    throw new IllegalArgumentException("pattern must be ASCII: " + pattern);
+                folded.append(c >= 'A' && c <= 'Z' ? (char) (c + 'a' - 'A') : c);
+            }
+            signatures.add(new Signature(field, folded.toString(), exact, label));
+            return this;
+        }
+
+        public SignatureMatcher build() {
+            Signature[] table = signatures.toArray(new Signature[0]);
+
+            // Alphabet: only the characters used by some pattern get their own class.
+            byte[] charClass = new byte[128];
+            int alphabetSize = 1;
+            for (Signature signature : table) {
+                for (int i = 0; i < signature.pattern.length(); i++) {
+                    char c = signature.pattern.charAt(i);
+                    if (charClass[c] == 0) {
+                        if (alphabetSize == Byte.MAX_VALUE)
+                            throw new IllegalStateException("too many distinct signature characters");
+                        charClass[c] = (byte) alphabetSize++;
+                    }
+                }
+            }
+
+            // Trie, with -1 for missing edges.
+            int capacity = 1;
+            for (Signature signature : table) capacity += signature.pattern.length();
+            int[] trie = new int[capacity * alphabetSize];
+            Arrays.fill(trie, -1);
+            int[] output = new int[capacity];
+            Arrays.fill(output, -1);
+            int[] nextOutput = new int[table.length];
+            Arrays.fill(nextOutput, -1);
+            int states = 1;
+            for (int id = 0; id < table.length; id++) {
+                String pattern = table[id].pattern;
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    int edge = state * alphabetSize + charClass[pattern.charAt(i)];
+                    if (trie[edge] < 0) trie[edge] = states++;
+                    state = trie[edge];
+                }
+                // Chain signatures sharing a terminal state; keep table order.
+                if (output[state] < 0) {
+                    output[state] = id;
+                } else {
+                    int last = output[state];
+                    while (nextOutput[last] >= 0) last = nextOutput[last];
+                    nextOutput[last] = id;
+                }
+            }
+
+            // Breadth-first pass: resolve failure links into the transition table and
+            // record, per state, the nearest suffix state that ends a signature.
+            int[] failure = new int[states];
+            int[] suffixOutput = new int[states];
+            Arrays.fill(suffixOutput, -1);
+            int[] queue = new int[states];
+            int head = 0;
+            int tail = 0;
+            for (int c = 0; c < alphabetSize; c++) {
+                int next = trie[c];
+                if (next < 0) {
+                    trie[c] = 0;
+                } else {
+                    queue[tail++] = next;
+                }
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                int fail = failure[state];
+                if (state != 0 && fail != 0) {
+                    suffixOutput[state] = output[fail] >= 0 ? fail : suffixOutput[fail];
+                }
+                for (int c = 0; c < alphabetSize; c++) {
+                    int edge = state * alphabetSize + c;
+                    int next = trie[edge];
+                    if (next < 0) {
+                        trie[edge] = trie[fail * alphabetSize + c];
+                    } else {
+                        failure[next] = trie[fail * alphabetSize + c];
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            return new SignatureMatcher(table, charClass, alphabetSize,
+                    Arrays.copyOf(trie, states * alphabetSize),
+                    Arrays.copyOf(output, states), nextOutput, suffixOutput);
+        }
+    }
+}
+
+// Made with ❤ by puzzletak
@@ -0,0 +1,436 @@
+package com.puzzletak.library;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Versioned, compact binary pack of every known-bad string the checks look for: multi-instance
+ * package names, su binary paths, emulator files, emulator property patterns and library names.
+ * <p>
+ * A pack downloaded by the host app is memory-mapped read-only and queried in place: exact and
+ * substring lookups compare the caller's chars directly with the mapped bytes, so no strings are
+ * materialized. {@link #install(File)} swaps the pack used by every check at runtime; until then the
+ * built-in default is used.
+ * <p>
+ * Layout (big-endian): int magic "PTSP", short version (1), short section count, int revision,
+ * then per section: byte section id, byte reserved, short entry count, int index offset.
+ * A section index is one int entry offset per entry, sorted by pattern bytes. An entry is
+ * byte field (0xFF for any), byte flags, byte pattern length, byte label length, pattern, label.
+ * Patterns and labels are ASCII.
+ * Made with ❤ by puzzletak
+ */
+public final class SignaturePack {
+
+    // Section ids.
+    public static final int SECTION_PACKAGES = 0;
+    public static final int SECTION_SU_PATHS = 1;
+    public static final int SECTION_EMULATOR_FILES = 2;
+    public static final int SECTION_PROPERTIES = 3;
+    public static final int SECTION_LIBRARIES = 4;
+    public static final int SECTION_COUNT = 5;
+
+    /** Entry flag: the whole value must equal the pattern. */
+    public static final int FLAG_EXACT = 1;
+
+    private static final int MAGIC = 0x50545350; // "PTSP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int SECTION_HEADER_SIZE = 8;
+    private static final int ENTRY_HEADER_SIZE = 4;
+    private static final int ANY_FIELD = 0xFF;
+
+    private static final SignaturePack DEFAULT = createDefault();
+    private static volatile SignaturePack current = DEFAULT;
+
+    public final int revision;
+
+    private final ByteBuffer buffer;
+    // Per section id: offset of the entry index and entry count; sections missing from the pack are empty.
+    private final int[] indexOffsets = new int[SECTION_COUNT];
+    private final int[] counts = new int[SECTION_COUNT];
+    // Compiled per section when the pack is loaded.
+    private final SignatureMatcher[] matchers = new SignatureMatcher[SECTION_COUNT];
+
+    private SignaturePack(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int limit = buffer.limit();
+        if (limit < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("not a signature pack");
+        int version = buffer.getShort(4);
+        if (version != VERSION)
+            throw new IllegalArgumentException("unsupported signature pack version " + version);
+        int sectionCount = buffer.getShort(6) & 0xFFFF;
+        revision = buffer.getInt(8);
+        if (HEADER_SIZE + sectionCount * SECTION_HEADER_SIZE > limit)
+            throw new IllegalArgumentException("truncated signature pack");
+        for (int i = 0; i < sectionCount; i++) {
+            int header = HEADER_SIZE + i * SECTION_HEADER_SIZE;
+            int id = buffer.get(header) & 0xFF;
+            int count = buffer.getShort(header + 2) & 0xFFFF;
+            int indexOffset = buffer.getInt(header + 4);
+            if (indexOffset < 0 || indexOffset + count * 4L > limit)
+                throw new IllegalArgumentException("truncated signature pack");
+            for (int e = 0; e < count; e++) {
+                int entry = buffer.getInt(indexOffset + e * 4);
+                if (entry < 0 || entry + ENTRY_HEADER_SIZE > limit
+                        || entry + ENTRY_HEADER_SIZE + patternLength(entry) + labelLength(entry) > limit)
+                    throw new IllegalArgumentException("truncated signature pack");
+            }
+            // Sections added by newer pack revisions are skipped.
+            if (id < SECTION_COUNT) {
+                indexOffsets[id] = indexOffset;
+                counts[id] = count;
+            }
+        }
+        // Compiling every section now rejects empty or non-ASCII patterns and oversized alphabets
+        // here, so a bad pack fails to install instead of failing inside later checks.
+        for (int id = 0; id < SECTION_COUNT; id++) {
+            for (int i = 1; i < counts[id]; i++) {
+                if (compareEntries(entryOffset(id, i - 1), entryOffset(id, i)) > 0)
+                    throw new IllegalArgumentException("unsorted signature pack section " + id);
+            }
+            try {
+                matchers[id] = compile(id);
+            } catch (IllegalStateException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The pack used by every check: the last one installed, or the built-in default.
+     */
+    public static SignaturePack current() {
+        return current;
+    }
+
+    public static SignaturePack getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Memory-maps and validates a pack. The file must not be modified afterwards;
+     * write updates to a new file (or rename over the old one) and install that.
+     *
+     * @throws IllegalArgumentException if the file is not a valid pack
+     */
+    public static SignaturePack load(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return new SignaturePack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Loads a pack and makes it the one used by every check.
+     *
+     * @throws IllegalArgumentException if the file is not a valid pack; the current pack is kept
+     */
+    public static SignaturePack install(File file) throws IOException {
+        SignaturePack pack = load(file);
+        current = pack;
+        return pack;
+    }
+
+    /**
+     * Makes {@code pack} the one used by every check, or restores the built-in default if null.
+     */
+    public static void install(SignaturePack pack) {
+        current = pack == null ? DEFAULT : pack;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not a valid pack
+     */
+    public static SignaturePack fromBytes(byte[] data) {
+        return new SignaturePack(ByteBuffer.wrap(data.clone()));
+    }
+
+    public int size(int section) {
+        return counts[section];
+    }
+
+    /**
+     * @return true if {@code value} is exactly one of the section's patterns; a binary search over the mapped index
+     */
+    public boolean contains(int section, CharSequence value) {
+        int low = 0;
+        int high = counts[section] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(entryOffset(section, mid), value);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the first entry whose pattern occurs in {@code value}, or -1
+     */
+    public int find(int section, CharSequence value) {
+        if (value == null) return -1;
+        int count = counts[section];
+        for (int i = 0; i < count; i++) {
+            if (occursIn(entryOffset(section, i), value)) return i;
+        }
+        return -1;
+    }
+
+    public String getPattern(int section, int index) {
+        int entry = entryOffset(section, index);
+        return ascii(entry + ENTRY_HEADER_SIZE, patternLength(entry));
+    }
+
+    public String getLabel(int section, int index) {
+        int entry = entryOffset(section, index);
+        int length = labelLength(entry);
+        return length == 0 ? null : ascii(entry + ENTRY_HEADER_SIZE + patternLength(entry), length);
+    }
+
+    /**
+     * The section compiled into a {@link SignatureMatcher} when the pack was loaded, for scanning many
+     * values (e.g. every line of /proc/self/maps) against all of its patterns in a single pass.
+     * Field ids and the exact flag of each entry are carried over.
+     */
+    public SignatureMatcher matcher(int section) {
+        return matchers[section];
+    }
+
+    private SignatureMatcher compile(int section) {
+        SignatureMatcher.Builder builder = new SignatureMatcher.Builder();
+        for (int i = 0; i < counts[section]; i++) {
+            int entry = entryOffset(section, i);
+            int field = buffer.get(entry) & 0xFF;
+            builder.add(field == ANY_FIELD ? SignatureMatcher.ANY_FIELD : field,
+                    getPattern(section, i),
+                    (buffer.get(entry + 1) & FLAG_EXACT) != 0,
+                    getLabel(section, i));
+        }
+        return builder.build();
+    }
+
+    private int entryOffset(int section, int index) {
+        return buffer.getInt(indexOffsets[section] + index * 4);
+    }
+
+    private int patternLength(int entry) {
+        return buffer.get(entry + 2) & 0xFF;
+    }
+
+    private int labelLength(int entry) {
+        return buffer.get(entry + 3) & 0xFF;
+    }
+
+    private int compare(int entry, CharSequence value) {
+        int start = entry + ENTRY_HEADER_SIZE;
+        int length = patternLength(entry);
+        int common = Math.min(length, value.length());
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(start + i) & 0xFF) - value.charAt(i);
+            if (diff != 0) return diff;
+        }
+        return length - value.length();
+    }
+
+    // Same order as the index: pattern bytes, then length.
+    private int compareEntries(int a, int b) {
+        int lengthA = patternLength(a);
+        int lengthB = patternLength(b);
+        for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+            int diff = (buffer.get(a + ENTRY_HEADER_SIZE + i) & 0xFF) - (buffer.get(b + ENTRY_HEADER_SIZE + i) & 0xFF);
+            if (diff != 0) return diff;
+        }
+        return lengthA - lengthB;
+    }
+
+    private boolean occursIn(int entry, CharSequence value) {
+        int start = entry + ENTRY_HEADER_SIZE;
+        int length = patternLength(entry);
+        int last = value.length() - length;
+        outer:
+        for (int from = 0; from <= last; from++) {
+            for (int i = 0; i < length; i++) {
+                if ((buffer.get(start + i) & 0xFF) != value.charAt(from + i)) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private String ascii(int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    private static SignaturePack createDefault() {
+        return new Builder(0)
+                .add(SECTION_PACKAGES, "com.bly.dkplat", "Dual App")
+                .add(SECTION_PACKAGES, "com.by.chaos", "Chaos Engine")
+                .add(SECTION_PACKAGES, "com.lbe.parallel", "Parallel Space")
+                .add(SECTION_PACKAGES, "com.excelliance.dualaid", "Dual Aid")
+                .add(SECTION_PACKAGES, "com.lody.virtual", "VirtualXposed, VirtualApp")
+                .add(SECTION_PACKAGES, "com.qihoo.magic", "360 Dual Master")
+                .add(SECTION_SU_PATHS, "/sbin/su", null)
+                .add(SECTION_SU_PATHS, "/system/bin/su", null)
+                .add(SECTION_SU_PATHS, "/system/xbin/su", null)
+                .add(SECTION_SU_PATHS, "/data/local/xbin/su", null)
+                .add(SECTION_SU_PATHS, "/data/local/bin/su", null)
+                .add(SECTION_SU_PATHS, "/system/sd/xbin/su", null)
+                .add(SECTION_SU_PATHS, "/system/bin/failsafe/su", null)
+                .add(SECTION_SU_PATHS, "/data/local/su", null)
+                .add(SECTION_EMULATOR_FILES, "/mnt/windows/BstSharedFolder", "BlueStacks")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "ttvm", true, "TTVM Emulator")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "nox", true, "Nox Emulator")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "cancro", true, "NetEase MUMU Emulator")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "intel", true, "Microvirt Emulator")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "vbox", true, "VirtualBox")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "vbox86", true, "Tencent Emulator")
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "android_x86", true, "LDPlayer Emulator")
+                .addProperty(ScoringModel.SIGNAL_HOST, "dev", true, null)
+                .addProperty(ScoringModel.SIGNAL_HOST, "build2", true, null)
+                .addProperty(ScoringModel.SIGNAL_HOST, "buildbot", true, null)
+                .addProperty(ScoringModel.SIGNAL_HOST, "google_sdk", true, null)
+                .addProperty(ScoringModel.SIGNAL_HOST, "android-build", true, null)
+                .addProperty(ScoringModel.SIGNAL_FLAVOR, "vbox", false, "VirtualBox")
+                .addProperty(ScoringModel.SIGNAL_FLAVOR, "sdk_gphone", false, "Android Emulator")
+                .addProperty(ScoringModel.SIGNAL_MODEL, "google_sdk", false, "Android Emulator")
+                .addProperty(ScoringModel.SIGNAL_MODEL, "emulator", false, null)
+                .addProperty(ScoringModel.SIGNAL_MODEL, "android sdk built for x86", false, "Android Emulator")
+                .addProperty(ScoringModel.SIGNAL_MANUFACTURER, "genymotion", false, "Genymotion")
+                .addProperty(ScoringModel.SIGNAL_MANUFACTURER, "netease", false, "NetEase MUMU Emulator")
+                .addProperty(ScoringModel.SIGNAL_BOARD, "android", false, null)
+                .addProperty(ScoringModel.SIGNAL_BOARD, "goldfish", false, "Android Emulator")
+                .addProperty(ScoringModel.SIGNAL_PLATFORM, "android", false, null)
+                .addProperty(ScoringModel.SIGNAL_BASEBAND, "1.0.0.0", false, null)
+                .add(SECTION_LIBRARIES, "frida-agent", "Frida")
+                .add(SECTION_LIBRARIES, "frida-gadget", "Frida")
+                .add(SECTION_LIBRARIES, "XposedBridge", "Xposed")
+                .add(SECTION_LIBRARIES, "libsubstrate", "Cydia Substrate")
+                .build();
+    }
+
+    /**
+     * Assembles a pack, e.g. on the server that publishes updates.
+     */
+    public static final class Builder {
+        private final int revision;
+        private final List<List<byte[]>> sections = new ArrayList<>();
+
+        /**
+         * @param revision increases with every published pack
+         */
+        public Builder(int revision) {
+            this.revision = revision;
+            for (int i = 0; i < SECTION_COUNT; i++) sections.add(new ArrayList<byte[]>());
+        }
+
+        /**
+         * Adds a substring pattern applying to any value.
+         */
+        public Builder add(int section, String pattern, String label) {
+            return addEntry(section, ANY_FIELD, 0, pattern, label);
+        }
+
+        /**
+         * Adds an emulator property pattern.
+         *
+         * @param signal one of the property {@code ScoringModel.SIGNAL_*} ids
+         * @param exact  true if the whole property value must equal the pattern
+         */
+        public Builder addProperty(int signal, String pattern, boolean exact, String label) {
+            return addEntry(SECTION_PROPERTIES, signal, exact ? FLAG_EXACT : 0, pattern, label);
+        }
+
+        private Builder addEntry(int section, int field, int flags, String pattern, String label) {
+            byte[] patternBytes = toAscii(pattern);
+            byte[] labelBytes = label == null ? new byte[0] : toAscii(label);
+            if (patternBytes.length == 0 || patternBytes.length > 0xFF || labelBytes.length > 0xFF)
+                throw new IllegalArgumentException("pattern must be 1..255 chars: " + pattern);
+            byte[] entry = new byte[ENTRY_HEADER_SIZE + patternBytes.length + labelBytes.length];
+            entry[0] = (byte) field;
+            entry[1] = (byte) flags;
+            entry[2] = (byte) patternBytes.length;
+            entry[3] = (byte) labelBytes.length;
+            System.arraycopy(patternBytes, 0, entry, ENTRY_HEADER_SIZE, patternBytes.length);
+            System.arraycopy(labelBytes, 0, entry, ENTRY_HEADER_SIZE + patternBytes.length, labelBytes.length);
+            sections.get(section).add(entry);
+            return this;
+        }
+
+        /**
+         * Encodes the pack in the format read by {@link #load(File)}.
+         */
+        public byte[] toBytes() {
+            int size = HEADER_SIZE + SECTION_COUNT * SECTION_HEADER_SIZE;
+            for (List<byte[]> entries : sections) {
+                for (byte[] entry : entries) size += 4 + entry.length;
+            }
+            ByteBuffer out = ByteBuffer.allocate(size);
+            out.putInt(MAGIC).putShort((short) VERSION).putShort((short) SECTION_COUNT).putInt(revision);
+            int offset = HEADER_SIZE + SECTION_COUNT * SECTION_HEADER_SIZE;
+            for (int id = 0; id < SECTION_COUNT; id++) {
+                List<byte[]> entries = sortedByPattern(sections.get(id));
+                out.position(HEADER_SIZE + id * SECTION_HEADER_SIZE);
+                out.put((byte) id).put((byte) 0).putShort((short) entries.size()).putInt(offset);
+                int entryOffset = offset + entries.size() * 4;
+                out.position(offset);
+                for (byte[] entry : entries) {
+                    out.putInt(entryOffset);
+                    entryOffset += entry.length;
+                }
+                for (byte[] entry : entries) out.put(entry);
+                offset = entryOffset;
+            }
+            return out.array();
+        }
+
+        public SignaturePack build() {
+            return new SignaturePack(ByteBuffer.wrap(toBytes()));
+        }
+
+        private static List<byte[]> sortedByPattern(List<byte[]> entries) {
+            List<byte[]> sorted = new ArrayList<>(entries);
+            Collections.sort(sorted, new Comparator<byte[]>() {
+                @Override
+                public int compare(byte[] a, byte[] b) {
+                    int lengthA = a[2] & 0xFF;
+                    int lengthB = b[2] & 0xFF;
+                    for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+                        int diff = (a[ENTRY_HEADER_SIZE + i] & 0xFF) - (b[ENTRY_HEADER_SIZE + i] & 0xFF);
+                        if (diff != 0) return diff;
+                    }
+                    return lengthA - lengthB;
+                }
+            });
+            return sorted;
+        }
+
+        private static byte[] toAscii(String value) {
+            byte[] bytes = new byte[value.length()];
+            for (int i = 0; i < bytes.length; i++) {
+                char c = value.charAt(i);
+                if (c >= 128) throw new IllegalArgumentException("must be ASCII: " + value);
+                bytes[i] = (byte) c;
+            }
+            return bytes;
+        }
+    }
+}
+
+// Made with ❤ by puzzletak
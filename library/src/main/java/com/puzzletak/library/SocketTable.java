@@ -0,0 +1,255 @@
+package com.puzzletak.library;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of the TCP sockets listed in {@code /proc/net/tcp} and {@code /proc/net/tcp6}.
+ * <p>
+ * Both files are parsed byte by byte, without splitting them into lines or strings, into one int
+ * array holding a fixed size record per socket: local address, port, state and owner UID. IPv4
+ * mapped IPv6 addresses are folded into their IPv4 form. Queries such as "is anything listening on
+ * 27042" are answered from the snapshot, so no socket is opened. Android 10+ hides these files from
+ * most apps; {@link #isReadable()} then returns false and every query finds nothing.
+ */
+public final class SocketTable {
+
+    public static final int STATE_ESTABLISHED = 0x01;
+    public static final int STATE_LISTEN = 0x0A;
+
+    static final int FLAG_IPV6 = 1;
+    static final int FLAG_LOOPBACK = 1 << 1;
+    static final int FLAG_WILDCARD = 1 << 2;
+
+    // Record layout.
+    private static final int ADDRESS = 0;
+    private static final int FLAGS = 1;
+    private static final int PORT = 2;
+    private static final int STATE = 3;
+    private static final int UID = 4;
+    private static final int STRIDE = 5;
+
+    private int[] records = new int[16 * STRIDE];
+    private int count;
+    private boolean readable;
+
+    SocketTable() {
+    }
+
+    /**
+     * Reads both socket files.
+     */
+    public static SocketTable read() {
+        return read("/proc/net/tcp", "/proc/net/tcp6");
+    }
+
+    static SocketTable read(String... paths) {
+        SocketTable table = new SocketTable();
+        ProcFs.Buffer buffer = ProcFs.threadBuffer();
+        for (String path : paths) {
+            if (ProcFs.read(path, buffer) < 0) continue;
+            table.readable = true;
+            table.parse(buffer.bytes(), buffer.length());
+        }
+        return table;
+    }
+
+    /**
+     * @return false if neither file could be read
+     */
+    public boolean isReadable() {
+        return readable;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the local IPv4 address of an IPv4 or IPv4 mapped socket, in network order, else 0
+     */
+    public int getAddress(int i) {
+        return records[i * STRIDE + ADDRESS];
+    }
+
+    public int getPort(int i) {
+        return records[i * STRIDE + PORT];
+    }
+
+    public int getState(int i) {
+        return records[i * STRIDE + STATE];
+    }
+
+    public int getUid(int i) {
+        return records[i * STRIDE + UID];
+    }
+
+    /**
+     * @return true for a socket bound to 127.0.0.0/8 or ::1
+     */
+    public boolean isLoopback(int i) {
+        return (records[i * STRIDE + FLAGS] & FLAG_LOOPBACK) != 0;
+    }
+
+    /**
+     * @return true for a socket bound to 0.0.0.0 or ::, i.e. reachable on every interface including loopback
+     */
+    public boolean isWildcard(int i) {
+        return (records[i * STRIDE + FLAGS] & FLAG_WILDCARD) != 0;
+    }
+
+    /**
+     * @return true if a socket in LISTEN state is bound to the port, on any address
+     */
+    public boolean isListening(int port) {
+        for (int i = 0; i < count; i++) {
+            int offset = i * STRIDE;
+            if (records[offset + PORT] == port && records[offset + STATE] == STATE_LISTEN) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if any of the ports is being listened on
+     */
+    public boolean isAnyListening(int[] ports) {
+        for (int port : ports) {
+            if (isListening(port)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ports in LISTEN state reachable through loopback, i.e. bound to a loopback or wildcard address.
+     *
+     * @param excludedUid owner whose sockets are left out, e.g. {@code Process.myUid()}, or -1 to keep all
+     * @return distinct ports in table order
+     */
+    public int[] getListeningLocalPorts(int excludedUid) {
+        int[] ports = new int[count];
+        int found = 0;
+        outer:
+        for (int i = 0; i < count; i++) {
+            int offset = i * STRIDE;
+            if (records[offset + STATE] != STATE_LISTEN) continue;
+            if ((records[offset + FLAGS] & (FLAG_LOOPBACK | FLAG_WILDCARD)) == 0) continue;
+            if (excludedUid >= 0 && records[offset + UID] == excludedUid) continue;
+            int port = records[offset + PORT];
+            for (int j = 0; j < found; j++) {
+                if (ports[j] == port) continue outer;
+            }
+            ports[found++] = port;
+        }
+        return Arrays.copyOf(ports, found);
+    }
+
+    void parse(byte[] data, int length) {
+        // The first line is the column header.
+        int pos = skipLine(data, length, 0);
+        while (pos < length) {
+            int end = pos;
+            while (end < length && data[end] != '\n') end++;
+            parseLine(data, pos, end);
+            pos = end + 1;
+        }
+    }
+
+    private void parseLine(byte[] data, int pos, int end) {
+        // "sl: local_address rem_address st tx:rx tr:when retrnsmt uid ..."
+        pos = skipField(data, pos, end);
+        int addressStart = skipSpaces(data, pos, end);
+        int colon = addressStart;
+        while (colon < end && data[colon] != ':') colon++;
+        int addressLength = colon - addressStart;
+        if ((addressLength != 8 && addressLength != 32) || colon + 5 > end) return;
+        int port = parseHex(data, colon + 1, colon + 5);
+        pos = skipField(data, addressStart, end);
+        pos = skipField(data, pos, end);
+        int stateStart = skipSpaces(data, pos, end);
+        if (stateStart + 2 > end) return;
+        int state = parseHex(data, stateStart, stateStart + 2);
+        pos = skipField(data, stateStart, end);
+        pos = skipField(data, pos, end);
+        pos = skipField(data, pos, end);
+        pos = skipField(data, pos, end);
+        int uidStart = skipSpaces(data, pos, end);
+        long uid = 0;
+        int i = uidStart;
+        while (i < end && data[i] >= '0' && data[i] <= '9' && i - uidStart < 10) {
+            uid = uid * 10 + (data[i++] - '0');
+        }
+        if (port < 0 || state < 0 || i == uidStart || uid > Integer.MAX_VALUE) return;
+
+        int address;
+        int flags;
+        if (addressLength == 8) {
+            address = parseHex(data, addressStart, addressStart + 8);
+            flags = 0;
+        } else {
+            flags = FLAG_IPV6;
+            int w0 = parseHex(data, addressStart, addressStart + 8);
+            int w1 = parseHex(data, addressStart + 8, addressStart + 16);
+            int w2 = parseHex(data, addressStart + 16, addressStart + 24);
+            int w3 = parseHex(data, addressStart + 24, addressStart + 32);
+            if (w0 == 0 && w1 == 0 && w2 == 0xFFFF0000) {
+                // ::ffff:a.b.c.d, the last word is the IPv4 address.
+                address = w3;
+            } else {
+                address = 0;
+                if (w0 == 0 && w1 == 0 && w2 == 0 && w3 == 0) flags |= FLAG_WILDCARD;
+                // ::1, each word is printed in host (little endian) order.
+                else if (w0 == 0 && w1 == 0 && w2 == 0 && w3 == 0x01000000) flags |= FLAG_LOOPBACK;
+            }
+        }
+        if ((flags & FLAG_IPV6) == 0 || address != 0) {
+            // Words are little endian: the first octet is the low byte.
+            address = Integer.reverseBytes(address);
+            if (address == 0) flags |= FLAG_WILDCARD;
+            else if ((address >>> 24) == 127) flags |= FLAG_LOOPBACK;
+        }
+        add(address, flags, port, state, (int) uid);
+    }
+
+    private void add(int address, int flags, int port, int state, int uid) {
+        if ((count + 1) * STRIDE > records.length) records = Arrays.copyOf(records, records.length * 2);
+        int offset = count * STRIDE;
+        records[offset + ADDRESS] = address;
+        records[offset + FLAGS] = flags;
+        records[offset + PORT] = port;
+        records[offset + STATE] = state;
+        records[offset + UID] = uid;
+        count++;
+    }
+
+    private static int skipLine(byte[] data, int length, int pos) {
+        while (pos < length && data[pos] != '\n') pos++;
+        return pos + 1;
+    }
+
+    private static int skipSpaces(byte[] data, int pos, int end) {
+        while (pos < end && data[pos] == ' ') pos++;
+        return pos;
+    }
+
+    private static int skipField(byte[] data, int pos, int end) {
+        pos = skipSpaces(data, pos, end);
+        while (pos < end && data[pos] != ' ') pos++;
+        return pos;
+    }
+
+    /**
+     * @return the value of up to 8 hex digits, or -1 if they are not all hex
+     */
+    private static int parseHex(byte[] data, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int b = data[i];
+            int digit;
+            if (b >= '0' && b <= '9') digit = b - '0';
+            else if (b >= 'A' && b <= 'F') digit = b - 'A' + 10;
+            else if (b >= 'a' && b <= 'f') digit = b - 'a' + 10;
+            else return -1;
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
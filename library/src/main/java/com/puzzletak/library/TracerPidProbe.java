@@ -0,0 +1,123 @@
+package com.puzzletak.library;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.FileDescriptor;
+import java.io.InterruptedIOException;
+
+/**
+ * Reads the TracerPid of the current process, cheap enough to poll as an anti-debug heartbeat.
+ * <p>
+ * {@code /proc/self/status} is opened once and kept open; every read is a {@code pread} at offset 0,
+ * which makes the kernel regenerate the file, into a byte buffer kept across reads, and the value is
+ * parsed in place. Once the first read has opened the descriptor and sized the buffer, a read
+ * allocates nothing, so it can run at high frequency without GC churn. Only failures allocate.
+ */
+public final class TracerPidProbe {
+
+    /** Returned when the status file cannot be read or has no TracerPid line. */
+    public static final int UNREADABLE = -1;
+
+    private static final byte[] KEY = {'T', 'r', 'a', 'c', 'e', 'r', 'P', 'i', 'd', ':'};
+    private static final int MAX_BUFFER = 16 * 1024;
+
+    private static class SingletonHolder {
+        private static final TracerPidProbe INSTANCE = new TracerPidProbe("/proc/self/status");
+    }
+
+    public static TracerPidProbe getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private final String path;
+    // TracerPid is among the first lines of the status file.
+    private byte[] buffer = new byte[512];
+    private FileDescriptor fd;
+
+    TracerPidProbe(String path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the pid of the process tracing this one, 0 if none, or {@link #UNREADABLE}
+     */
+    public synchronized int read() {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                if (fd == null) fd = Os.open(path, openFlags(), 0);
+                while (true) {
+                    int length = fill();
+                    int value = parse(length);
+                    if (value != UNREADABLE || length < buffer.length || buffer.length >= MAX_BUFFER) return value;
+                    // The line lies beyond the buffer; grow once and keep the larger buffer.
+                    buffer = new byte[buffer.length * 2];
+                }
+            } catch (ErrnoException e) {
+                // The descriptor may have been invalidated; reopen once.
+                close();
+            } catch (InterruptedIOException e) {
+                Thread.currentThread().interrupt();
+                return UNREADABLE;
+            }
+        }
+        return UNREADABLE;
+    }
+
+    /**
+     * Releases the cached descriptor; the next {@link #read()} reopens it.
+     */
+    public synchronized void close() {
+        if (fd != null) {
+            try {
+                Os.close(fd);
+            } catch (ErrnoException ignore) {
+            }
+            fd = null;
+        }
+    }
+
+    private static int openFlags() {
+        // OsConstants.O_CLOEXEC only exists from API 27; reading it earlier throws NoSuchFieldError.
+        if (Build.VERSION.SDK_INT >= 27) return OsConstants.O_RDONLY | OsConstants.O_CLOEXEC;
+        return OsConstants.O_RDONLY;
+    }
+
+    private int fill() throws ErrnoException, InterruptedIOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = Os.pread(fd, buffer, length, buffer.length - length, length);
+            if (read <= 0) break;
+            length += read;
+        }
+        return length;
+    }
+
+    private int parse(int length) {
+        byte[] data = buffer;
+        int last = length - KEY.length;
+        outer:
+        for (int start = 0; start <= last; start++) {
+            // Keys only start at the beginning of a line.
+            if (start > 0 && data[start - 1] != '\n') continue;
+            for (int i = 0; i < KEY.length; i++) {
+                if (data[start + i] != KEY[i]) continue outer;
+            }
+            int i = start + KEY.length;
+            while (i < length && (data[i] == ' ' || data[i] == '\t')) i++;
+            int value = 0;
+            int digits = 0;
+            while (i < length && data[i] >= '0' && data[i] <= '9') {
+                value = value * 10 + (data[i] - '0');
+                i++;
+                digits++;
+            }
+            // A line cut by the end of the buffer is not a value.
+            if (digits == 0 || i == length) return UNREADABLE;
+            return value;
+        }
+        return UNREADABLE;
+    }
+}
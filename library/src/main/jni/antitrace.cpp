@@ -1,85 +1,573 @@
 #include <jni.h>
-#include <string>
 #include <pthread.h>
 #include <unistd.h>
-#include <stdio.h>
+#include <fcntl.h>
+#include <poll.h>
+#include <errno.h>
 #include <stdlib.h>
-#include <sys/ptrace.h>
-#include <android/log.h>
 #include <string.h>
+#include <time.h>
+#include <atomic>
+#include <limits.h>
+#include <sys/inotify.h>
+#include <android/log.h>
 
 #define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, "ceshi", __VA_ARGS__)
 
-int get_number_for_str(char *str) {
-    if (str == NULL) {
+#define WATCHDOG_CLASS "com/puzzletak/library/NativeWatchdog"
+#define PROBE_BATCH_CLASS "com/puzzletak/library/ProbeBatch"
+
+// Probe ops and results, mirrored in ProbeBatch.java.
+#define OP_EXISTS 0
+#define OP_STARTS_WITH 1
+#define OP_CONTAINS 2
+#define OP_KEY_VALUE 3
+#define RESULT_UNREADABLE (-1)
+#define RESULT_NO_VALUE ((jint) 0x80000000)
+
+static JavaVM *g_vm = NULL;
+static jclass g_watchdog_class = NULL;
+static jmethodID g_on_tracer_detected = NULL;
+
+// Commands written to g_command_pipe[1]; the watchdog thread wakes up for each of them.
+#define COMMAND_STOP 'S'
+#define COMMAND_PAUSE 'P'
+#define COMMAND_RESUME 'R'
+
+static pthread_mutex_t g_lock = PTHREAD_MUTEX_INITIALIZER;
+static pthread_t g_thread;
+static bool g_initialized = false;
+static bool g_running = false;
+// Wanted pause state, also applied to a thread started later.
+static bool g_paused = false;
+static int g_command_pipe[2] = {-1, -1};
+
+// Counters read by NativeWatchdog.getStats(), reset by init and shutdown.
+static std::atomic<int64_t> g_polls(0);
+static std::atomic<int64_t> g_poll_nanos(0);
+static std::atomic<int64_t> g_max_poll_nanos(0);
+static std::atomic<int64_t> g_detections(0);
+
+struct watchdog_config {
+    int status_fd;
+    int interval_ms;
+    bool wake_on_access;
+    bool paused;
+};
+
+static int64_t now_nanos() {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t) ts.tv_sec * 1000000000LL + ts.tv_nsec;
+}
+
+static void reset_counters() {
+    g_polls = 0;
+    g_poll_nanos = 0;
+    g_max_poll_nanos = 0;
+    g_detections = 0;
+}
+
+/**
+ * Reads the TracerPid of the process from an already open /proc/self/status.
+ * The file is re-read with pread at offset 0, which makes the kernel regenerate it.
+ *
+ * @return the tracer pid, 0 if not traced, -1 if the value cannot be read
+ */
+static int read_tracer_pid(int fd) {
+    char buf[1024];
+    ssize_t len = pread(fd, buf, sizeof(buf) - 1, 0);
+    if (len <= 0) {
         return -1;
     }
-    char result[20];
-    int count = 0;
-    while (*str != '\0') {
-        if (*str >= 48 && *str <= 57) {
-            result[count] = *str;
-            count++;
-        }
-        str++;
-    }
-    int val = atoi(result);
-    return val;
-}
-
-void *thread_function(void *argv) {
-    int pid = getpid();
-    char file_name[20] = {'\0'};
-    sprintf(file_name, "/proc/%d/status", pid);
-    char linestr[256];
-    int i = 0, traceid;
-    FILE *fp;
-    while (1) {
-        i = 0;
-        fp = fopen(file_name, "r");
-        if (fp == NULL) {
+    buf[len] = '\0';
+    static const char key[] = "TracerPid:";
+    char *line = buf;
+    while (line != NULL) {
+        if (strncmp(line, key, sizeof(key) - 1) == 0) {
+            char *end = NULL;
+            long value = strtol(line + sizeof(key) - 1, &end, 10);
+            if (end == line + sizeof(key) - 1) {
+                return -1;
+            }
+            return (int) value;
+        }
+        line = strchr(line, '\n');
+        if (line != NULL) {
+            line++;
+        }
+    }
+    return -1;
+}
+
+static void report_tracer(JNIEnv *env, int tracer_pid) {
+    if (env == NULL || g_on_tracer_detected == NULL) {
+        return;
+    }
+    env->CallStaticVoidMethod(g_watchdog_class, g_on_tracer_detected, tracer_pid);
+    if (env->ExceptionCheck()) {
+        env->ExceptionClear();
+    }
+}
+
+// Attaching a tracer changes /proc/self/status without any inotify event, so instead the
+// files a debugger or memory dumper touches first are watched: any access to them triggers
+// an immediate check instead of waiting for the next interval.
+static int open_access_watch() {
+    int fd = inotify_init1(IN_NONBLOCK | IN_CLOEXEC);
+    if (fd < 0) {
+        return -1;
+    }
+    const char *paths[] = {"/proc/self/mem", "/proc/self/pagemap", "/proc/self/maps"};
+    int watches = 0;
+    for (size_t i = 0; i < sizeof(paths) / sizeof(paths[0]); i++) {
+        if (inotify_add_watch(fd, paths[i], IN_OPEN | IN_ACCESS) >= 0) {
+            watches++;
+        }
+    }
+    if (watches == 0) {
+        close(fd);
+        return -1;
+    }
+    return fd;
+}
+
+static void *watchdog_thread(void *arg) {
+    watchdog_config config = *(watchdog_config *) arg;
+    free(arg);
+
+    JNIEnv *env = NULL;
+    JavaVMAttachArgs attach_args = {JNI_VERSION_1_6, "PuzzleTak-watchdog", NULL};
+    if (g_vm->AttachCurrentThreadAsDaemon(&env, &attach_args) != JNI_OK) {
+        env = NULL;
+    }
+
+    int status_fd = config.status_fd;
+    int inotify_fd = config.wake_on_access ? open_access_watch() : -1;
+    int command_fd = g_command_pipe[0];
+    bool paused = config.paused;
+    bool stopped = false;
+    int last_tracer = 0;
+    char events[4096];
+
+    while (!stopped) {
+        if (!paused) {
+            int64_t started = now_nanos();
+            int tracer = read_tracer_pid(status_fd);
+            int64_t elapsed = now_nanos() - started;
+            g_polls++;
+            g_poll_nanos += elapsed;
+            int64_t max = g_max_poll_nanos.load();
+            while (elapsed > max && !g_max_poll_nanos.compare_exchange_weak(max, elapsed)) {
+            }
+            // Only changes are reported, so a lingering tracer does not flood the listener.
+            if (tracer > 0 && tracer != last_tracer) {
+                LOGD("I was be traced...trace pid:%d", tracer);
+                g_detections++;
+                report_tracer(env, tracer);
+            }
+            if (tracer >= 0) {
+                last_tracer = tracer;
+            }
+        }
+
+        // While paused only commands can wake the thread up.
+        struct pollfd fds[2];
+        fds[0].fd = command_fd;
+        fds[0].events = POLLIN;
+        fds[1].fd = inotify_fd;
+        fds[1].events = POLLIN;
+        int count = !paused && inotify_fd >= 0 ? 2 : 1;
+        int ready = poll(fds, count, paused ? -1 : config.interval_ms);
+        if (ready < 0 && errno != EINTR) {
             break;
         }
-        while (!feof(fp)) {
-            fgets(linestr, 256, fp);
-            if (i == 5) {
-                traceid = get_number_for_str(linestr);
-                LOGD("traceId:%d", traceid);
-                if (traceid > 1000) {
-                    LOGD("I was be traced...trace pid:%d", traceid);
-                    exit(0);
-                }
+        if (ready <= 0) {
+            continue;
+        }
+        if ((fds[0].revents & (POLLHUP | POLLERR)) != 0 && (fds[0].revents & POLLIN) == 0) {
+            break;
+        }
+        if ((fds[0].revents & POLLIN) != 0) {
+            char commands[16];
+            ssize_t n = read(command_fd, commands, sizeof(commands));
+            if (n <= 0) {
                 break;
             }
-            i++;
+            for (ssize_t i = 0; i < n; i++) {
+                if (commands[i] == COMMAND_STOP) {
+                    stopped = true;
+                } else if (commands[i] == COMMAND_PAUSE) {
+                    paused = true;
+                } else if (commands[i] == COMMAND_RESUME) {
+                    paused = false;
+                }
+            }
+        }
+        if (count == 2 && (fds[1].revents & POLLIN) != 0) {
+            // A burst of accesses results in a single check.
+            while (read(inotify_fd, events, sizeof(events)) > 0) {
+            }
+        }
+        if (paused && inotify_fd >= 0) {
+            // Accesses while paused are not of interest once resumed.
+            while (read(inotify_fd, events, sizeof(events)) > 0) {
+            }
         }
-        fclose(fp);
-        sleep(5);
     }
-    return ((void *) 0);
+
+    pthread_mutex_lock(&g_lock);
+    if (!stopped && g_running && pthread_equal(g_thread, pthread_self())) {
+        // Exiting on an error rather than a stop command: nobody will join this thread, and later
+        // starts and commands must not see it as running or write to the pipe it is closing.
+        LOGD("watchdog thread exiting on error %d", errno);
+        close(g_command_pipe[1]);
+        g_command_pipe[0] = -1;
+        g_command_pipe[1] = -1;
+        g_running = false;
+        pthread_detach(pthread_self());
+    }
+    pthread_mutex_unlock(&g_lock);
+
+    close(command_fd);
+    close(status_fd);
+    if (inotify_fd >= 0) {
+        close(inotify_fd);
+    }
+    if (env != NULL) {
+        g_vm->DetachCurrentThread();
+    }
+    return NULL;
+}
+
+static void close_command_pipe() {
+    for (int i = 0; i < 2; i++) {
+        if (g_command_pipe[i] >= 0) {
+            close(g_command_pipe[i]);
+            g_command_pipe[i] = -1;
+        }
+    }
+}
+
+// Must hold g_lock.
+static void send_command(char command) {
+    if (g_running) {
+        write(g_command_pipe[1], &command, 1);
+    }
 }
 
-void create_thread_check_traceid() {
-    pthread_t t_id;
-    int err = pthread_create(&t_id, NULL, thread_function, NULL);
+static jboolean native_init(JNIEnv *env, jclass clazz) {
+    pthread_mutex_lock(&g_lock);
+    if (!g_initialized) {
+        reset_counters();
+        g_paused = false;
+        g_initialized = true;
+    }
+    pthread_mutex_unlock(&g_lock);
+    return JNI_TRUE;
+}
+
+static jboolean native_start(JNIEnv *env, jclass clazz, jint interval_ms, jboolean wake_on_access) {
+    pthread_mutex_lock(&g_lock);
+    if (!g_initialized) {
+        pthread_mutex_unlock(&g_lock);
+        return JNI_FALSE;
+    }
+    if (g_running) {
+        pthread_mutex_unlock(&g_lock);
+        return JNI_TRUE;
+    }
+    // Opened here so that a start that cannot read the status fails right away.
+    int status_fd = open("/proc/self/status", O_RDONLY | O_CLOEXEC);
+    if (status_fd < 0) {
+        pthread_mutex_unlock(&g_lock);
+        return JNI_FALSE;
+    }
+    if (pipe2(g_command_pipe, O_CLOEXEC) != 0) {
+        close(status_fd);
+        pthread_mutex_unlock(&g_lock);
+        return JNI_FALSE;
+    }
+    watchdog_config *config = (watchdog_config *) malloc(sizeof(watchdog_config));
+    config->status_fd = status_fd;
+    config->interval_ms = interval_ms > 0 ? interval_ms : 1;
+    config->wake_on_access = wake_on_access == JNI_TRUE;
+    config->paused = g_paused;
+    int err = pthread_create(&g_thread, NULL, watchdog_thread, config);
     if (err != 0) {
         LOGD("create thread fail: %s\n", strerror(err));
+        free(config);
+        close(status_fd);
+        close_command_pipe();
+        pthread_mutex_unlock(&g_lock);
+        return JNI_FALSE;
+    }
+    g_running = true;
+    pthread_mutex_unlock(&g_lock);
+    return JNI_TRUE;
+}
+
+static void native_stop(JNIEnv *env, jclass clazz) {
+    pthread_mutex_lock(&g_lock);
+    if (!g_running) {
+        pthread_mutex_unlock(&g_lock);
+        return;
+    }
+    pthread_t thread = g_thread;
+    // The thread owns the read end and closes it when it exits.
+    send_command(COMMAND_STOP);
+    close(g_command_pipe[1]);
+    g_command_pipe[0] = -1;
+    g_command_pipe[1] = -1;
+    g_running = false;
+    // Not joined under the lock, so a listener calling stop concurrently cannot deadlock.
+    pthread_mutex_unlock(&g_lock);
+    if (pthread_equal(pthread_self(), thread)) {
+        // Stopped from the listener: the thread exits once the callback returns.
+        pthread_detach(thread);
+    } else {
+        pthread_join(thread, NULL);
+    }
+}
+
+static void native_set_paused(JNIEnv *env, jclass clazz, jboolean paused) {
+    pthread_mutex_lock(&g_lock);
+    g_paused = paused == JNI_TRUE;
+    send_command(g_paused ? COMMAND_PAUSE : COMMAND_RESUME);
+    pthread_mutex_unlock(&g_lock);
+}
+
+static void native_shutdown(JNIEnv *env, jclass clazz) {
+    native_stop(env, clazz);
+    pthread_mutex_lock(&g_lock);
+    g_initialized = false;
+    g_paused = false;
+    reset_counters();
+    pthread_mutex_unlock(&g_lock);
+}
+
+// out: polls, total poll time, longest poll time (ns), detections, running, paused.
+static void native_get_stats(JNIEnv *env, jclass clazz, jlongArray out) {
+    jlong stats[6];
+    stats[0] = g_polls.load();
+    stats[1] = g_poll_nanos.load();
+    stats[2] = g_max_poll_nanos.load();
+    stats[3] = g_detections.load();
+    pthread_mutex_lock(&g_lock);
+    stats[4] = g_running ? 1 : 0;
+    stats[5] = g_paused ? 1 : 0;
+    pthread_mutex_unlock(&g_lock);
+    env->SetLongArrayRegion(out, 0, 6, stats);
+}
+
+static jint native_read_tracer_pid(JNIEnv *env, jclass clazz) {
+    int fd = open("/proc/self/status", O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return -1;
     }
+    int tracer = read_tracer_pid(fd);
+    close(fd);
+    return tracer;
 }
 
+// Reads up to len bytes from the start of fd.
+static ssize_t read_fully(int fd, char *buf, size_t len) {
+    size_t total = 0;
+    while (total < len) {
+        ssize_t n = read(fd, buf + total, len - total);
+        if (n < 0 && errno == EINTR) {
+            continue;
+        }
+        if (n <= 0) {
+            break;
+        }
+        total += n;
+    }
+    return total;
+}
+
+static jint probe_starts_with(const char *path, const char *arg, size_t arg_len) {
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return RESULT_UNREADABLE;
+    }
+    char buf[256];
+    size_t want = arg_len < sizeof(buf) ? arg_len : sizeof(buf);
+    ssize_t n = read_fully(fd, buf, want);
+    close(fd);
+    return n == (ssize_t) want && memcmp(buf, arg, want) == 0 ? 1 : 0;
+}
+
+// Streams the file in chunks, carrying the last arg_len - 1 bytes over so matches across chunks are found.
+static jint probe_contains(const char *path, const char *arg, size_t arg_len) {
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return RESULT_UNREADABLE;
+    }
+    static const size_t CHUNK = 16 * 1024;
+    char buf[CHUNK + 256];
+    size_t carry = 0;
+    jint found = 0;
+    while (!found) {
+        ssize_t n = read(fd, buf + carry, CHUNK);
+        if (n < 0 && errno == EINTR) {
+            continue;
+        }
+        if (n <= 0) {
+            break;
+        }
+        size_t len = carry + n;
+        if (memmem(buf, len, arg, arg_len) != NULL) {
+            found = 1;
+            break;
+        }
+        carry = arg_len > 1 ? (arg_len - 1 < len ? arg_len - 1 : len) : 0;
+        memmove(buf, buf + len - carry, carry);
+    }
+    close(fd);
+    return found;
+}
+
+// Value of the first line starting with the key, e.g. "TracerPid:" in /proc/self/status.
+static jint probe_key_value(const char *path, const char *arg, size_t arg_len) {
+    int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        return RESULT_NO_VALUE;
+    }
+    char buf[16 * 1024];
+    ssize_t n = read_fully(fd, buf, sizeof(buf) - 1);
+    close(fd);
+    if (n <= 0) {
+        return RESULT_NO_VALUE;
+    }
+    buf[n] = '\0';
+    char *line = buf;
+    while (line != NULL) {
+        if (strncmp(line, arg, arg_len) == 0) {
+            char *end = NULL;
+            long value = strtol(line + arg_len, &end, 10);
+            return end == line + arg_len ? RESULT_NO_VALUE : (jint) value;
+        }
+        line = strchr(line, '\n');
+        if (line != NULL) {
+            line++;
+        }
+    }
+    return RESULT_NO_VALUE;
+}
+
+/**
+ * Runs a packed probe list, see ProbeBatch for the layout, and writes one result per probe.
+ *
+ * @return the number of probes run; less than count if the list is malformed
+ */
+static jint native_run_probes(JNIEnv *env, jclass clazz, jbyteArray packed, jint count, jintArray results) {
+    jsize length = env->GetArrayLength(packed);
+    jbyte *data = env->GetByteArrayElements(packed, NULL);
+    if (data == NULL) {
+        return 0;
+    }
+    jint *out = (jint *) malloc(sizeof(jint) * (count > 0 ? count : 1));
+    char path[PATH_MAX];
+    char arg[256];
+    jsize pos = 0;
+    jint done = 0;
+    while (done < count && pos + 3 <= length) {
+        int op = data[pos];
+        size_t path_len = ((data[pos + 1] & 0xFF) << 8) | (data[pos + 2] & 0xFF);
+        pos += 3;
+        if (path_len >= sizeof(path) || pos + path_len + 2 > (size_t) length) {
+            break;
+        }
+        memcpy(path, data + pos, path_len);
+        path[path_len] = '\0';
+        pos += path_len;
+        size_t arg_len = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+        pos += 2;
+        if (arg_len >= sizeof(arg) || pos + arg_len > (size_t) length) {
+            break;
+        }
+        memcpy(arg, data + pos, arg_len);
+        arg[arg_len] = '\0';
+        pos += arg_len;
+
+        jint result;
+        switch (op) {
+            case OP_EXISTS:
+                result = access(path, F_OK) == 0 ? 1 : 0;
+                break;
+            case OP_STARTS_WITH:
+                result = probe_starts_with(path, arg, arg_len);
+                break;
+            case OP_CONTAINS:
+                result = arg_len == 0 ? 1 : probe_contains(path, arg, arg_len);
+                break;
+            case OP_KEY_VALUE:
+                result = probe_key_value(path, arg, arg_len);
+                break;
+            default:
+                result = RESULT_UNREADABLE;
+                break;
+        }
+        out[done++] = result;
+    }
+    env->ReleaseByteArrayElements(packed, data, JNI_ABORT);
+    env->SetIntArrayRegion(results, 0, done, out);
+    free(out);
+    return done;
+}
+
+static const JNINativeMethod g_probe_methods[] = {
+        {"nativeRunProbes", "([BI[I)I", (void *) native_run_probes},
+};
+
+static const JNINativeMethod g_methods[] = {
+        {"nativeInit",          "()Z",   (void *) native_init},
+        {"nativeShutdown",      "()V",   (void *) native_shutdown},
+        {"nativeStart",         "(IZ)Z", (void *) native_start},
+        {"nativeStop",          "()V",   (void *) native_stop},
+        {"nativeSetPaused",     "(Z)V",  (void *) native_set_paused},
+        {"nativeGetStats",      "([J)V", (void *) native_get_stats},
+        {"nativeReadTracerPid", "()I",   (void *) native_read_tracer_pid},
+};
+
 extern "C"
 JNIEXPORT jint JNICALL
 JNI_OnLoad(JavaVM *vm, void *reserved) {
     LOGD("JNI on load...");
+    g_vm = vm;
+    JNIEnv *env = NULL;
+    if (vm->GetEnv((void **) &env, JNI_VERSION_1_6) != JNI_OK) {
+        return JNI_ERR;
+    }
+    jclass clazz = env->FindClass(WATCHDOG_CLASS);
+    if (clazz == NULL) {
+        env->ExceptionClear();
+        return JNI_ERR;
+    }
+    g_watchdog_class = (jclass) env->NewGlobalRef(clazz);
+    env->DeleteLocalRef(clazz);
+    g_on_tracer_detected = env->GetStaticMethodID(g_watchdog_class, "onTracerDetected", "(I)V");
+    if (g_on_tracer_detected == NULL
+        || env->RegisterNatives(g_watchdog_class, g_methods,
+                                sizeof(g_methods) / sizeof(g_methods[0])) != JNI_OK) {
+        env->ExceptionClear();
+        return JNI_ERR;
+    }
 
-    LOGD("ptrace myself...");
-//    ptrace(PTRACE_TRACEME, 0, 0, 0);
-
-    create_thread_check_traceid();
+    clazz = env->FindClass(PROBE_BATCH_CLASS);
+    if (clazz == NULL
+        || env->RegisterNatives(clazz, g_probe_methods,
+                                sizeof(g_probe_methods) / sizeof(g_probe_methods[0])) != JNI_OK) {
+        env->ExceptionClear();
+        return JNI_ERR;
+    }
+    env->DeleteLocalRef(clazz);
 
+    // The watchdog is initialized and started from Java (NDKUtil / NativeWatchdog), which also owns the policy.
     return JNI_VERSION_1_6;
 }
 
 void JNI_OnUnload(JavaVM *vm, void *reserved) {
     LOGD("JNI unload...");
-}
\ No newline at end of file
+}
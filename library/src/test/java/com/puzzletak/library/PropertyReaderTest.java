@@ -0,0 +1,40 @@
+package com.puzzletak.library;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PropertyReaderTest {
+
+    @After
+    public void restoreSource() {
+        PropertyReader.setSource(null);
+    }
+
+    @Test
+    public void readsFromInstalledSource() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("ro.hardware", "ranchu");
+        properties.put("ro.product.model", "sdk_gphone_x86");
+        PropertyReader.setSource(new PropertySource() {
+            @Override
+            public String get(String key) {
+                return properties.get(key);
+            }
+        });
+        assertEquals("ranchu", PropertyReader.get("ro.hardware"));
+        assertArrayEquals(new String[]{"sdk_gphone_x86", null, "ranchu"},
+                PropertyReader.getProperties("ro.product.model", "ro.board.platform", "ro.hardware"));
+    }
+
+    @Test
+    public void systemSourceReturnsNullOffDevice() {
+        assertNull(PropertyReader.get("ro.hardware"));
+    }
+}
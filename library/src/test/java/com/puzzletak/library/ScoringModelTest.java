@@ -0,0 +1,115 @@
+package com.puzzletak.library;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScoringModelTest {
+
+    private static int[] unknownSignals() {
+        int[] values = new int[ScoringModel.SIGNAL_COUNT];
+        Arrays.fill(values, ScoringModel.UNKNOWN);
+        return values;
+    }
+
+    @Test
+    public void bytesRoundTrip() {
+        ScoringModel model = new ScoringModel.Builder(2)
+                .addRule(ScoringModel.SIGNAL_CAMERA, ScoringModel.MATCH_EQUAL, 0, 1, 2)
+                .addRule(ScoringModel.SIGNAL_SENSOR_COUNT, ScoringModel.MATCH_AT_MOST, 3, -2, 1)
+                .addRule(ScoringModel.SIGNAL_CGROUP, ScoringModel.MATCH_NOT_EQUAL, 70000, 5, 4)
+                .build();
+        byte[] data = model.toBytes();
+        // "PTSM", version 1, 3 rules.
+        assertEquals(0x50, data[0]);
+        assertEquals(0x4D, data[3]);
+        assertEquals(12 + 3 * 10, data.length);
+
+        ScoringModel decoded = ScoringModel.fromBytes(data);
+        assertEquals(2, decoded.verdictThreshold);
+        assertArrayEquals(data, decoded.toBytes());
+    }
+
+    @Test
+    public void rejectsBadMagic() {
+        byte[] data = ScoringModel.getDefault().toBytes();
+        data[0] = 'X';
+        try {
+            ScoringModel.fromBytes(data);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedModel() {
+        byte[] data = ScoringModel.getDefault().toBytes();
+        try {
+            ScoringModel.fromBytes(Arrays.copyOf(data, data.length - 1));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsUnknownSignal() {
+        try {
+            new ScoringModel.Builder(0).addRule(ScoringModel.SIGNAL_COUNT, ScoringModel.MATCH_EQUAL, 0, 1, 1).build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void unknownSignalsNeverMatch() {
+        ScoringModel model = ScoringModel.getDefault();
+        assertEquals(0, model.score(unknownSignals()));
+    }
+
+    @Test
+    public void defaultModelVerdict() {
+        ScoringModel model = ScoringModel.getDefault();
+        int[] values = unknownSignals();
+        values[ScoringModel.SIGNAL_CAMERA] = 0;
+        values[ScoringModel.SIGNAL_BLUETOOTH] = 0;
+        values[ScoringModel.SIGNAL_USER_APP_COUNT] = 1;
+        assertEquals(3, model.score(values));
+        assertFalse(model.isEmulator(model.score(values)));
+
+        values[ScoringModel.SIGNAL_HARDWARE] = CheckResult.RESULT_EMULATOR;
+        assertTrue(model.isEmulator(model.score(values)));
+    }
+
+    @Test
+    public void scoreUntilDecidedAgreesWithScore() {
+        ScoringModel model = ScoringModel.getDefault();
+        final int[] values = unknownSignals();
+        values[ScoringModel.SIGNAL_BASEBAND] = CheckResult.RESULT_MAYBE_EMULATOR;
+        values[ScoringModel.SIGNAL_SENSOR_COUNT] = 2;
+        final boolean[] read = new boolean[ScoringModel.SIGNAL_COUNT];
+        int score = model.scoreUntilDecided(new ScoringModel.SignalReader() {
+            @Override
+            public int read(int signal) {
+                read[signal] = true;
+                return values[signal];
+            }
+        });
+        assertEquals(model.isEmulator(model.score(values)), model.isEmulator(score));
+        // The verdict is decided before the costliest signal is needed.
+        assertFalse(read[ScoringModel.SIGNAL_USER_APP_COUNT]);
+    }
+
+    @Test
+    public void countLimit() {
+        ScoringModel model = ScoringModel.getDefault();
+        assertEquals(2, model.countLimit(ScoringModel.SIGNAL_USER_APP_COUNT));
+        assertEquals(Integer.MAX_VALUE, model.countLimit(ScoringModel.SIGNAL_CAMERA));
+        assertEquals(0, new ScoringModel.Builder(0).build().countLimit(ScoringModel.SIGNAL_USER_APP_COUNT));
+    }
+}
@@ -0,0 +1,68 @@
+package com.puzzletak.library;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+public class SignatureMatcherTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final SignatureMatcher matcher = new SignatureMatcher.Builder()
+            .add(ScoringModel.SIGNAL_HARDWARE, "goldfish", false, "Android Emulator")
+            .add(ScoringModel.SIGNAL_HARDWARE, "vbox86", true, "Genymotion")
+            .add(ScoringModel.SIGNAL_MODEL, "sdk", false, null)
+            .add(SignatureMatcher.ANY_FIELD, "nox", false, "Nox")
+            .build();
+
+    @Test
+    public void matchesSubstringCaseInsensitively() {
+        assertEquals(0, matcher.match(ScoringModel.SIGNAL_HARDWARE, "ranchu-GoldFish-x86"));
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_HARDWARE, "qcom"));
+    }
+
+    @Test
+    public void exactSignatureMustSpanTheValue() {
+        assertEquals(1, matcher.match(ScoringModel.SIGNAL_HARDWARE, "VBOX86"));
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_HARDWARE, "vbox86p"));
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_HARDWARE, "xvbox86"));
+    }
+
+    @Test
+    public void respectsFields() {
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_HARDWARE, "sdk_gphone"));
+        assertEquals(2, matcher.match(ScoringModel.SIGNAL_MODEL, "sdk_gphone"));
+        assertEquals(3, matcher.match(ScoringModel.SIGNAL_BOARD, "bignox"));
+    }
+
+    @Test
+    public void findsPatternsThroughFailureLinks() {
+        SignatureMatcher overlapping = new SignatureMatcher.Builder()
+                .add(SignatureMatcher.ANY_FIELD, "abcd", false, null)
+                .add(SignatureMatcher.ANY_FIELD, "bce", false, null)
+                .build();
+        assertEquals(1, overlapping.match(0, "abce"));
+        assertEquals(0, overlapping.match(0, "xxabcd"));
+    }
+
+    @Test
+    public void matchesBytes() {
+        byte[] line = "7f00-7f10 r-xp 00000000 fd:00 12 /system/lib/libGOLDFISH.so".getBytes(ASCII);
+        assertEquals(0, matcher.match(ScoringModel.SIGNAL_HARDWARE, line, 0, line.length));
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_HARDWARE, line, 0, 20));
+    }
+
+    @Test
+    public void matchFieldsReportsEveryField() {
+        byte[] data = "goldfish sdk".getBytes(ASCII);
+        int fields = matcher.matchFields(data, 0, data.length);
+        assertEquals((1 << ScoringModel.SIGNAL_HARDWARE) | (1 << ScoringModel.SIGNAL_MODEL), fields);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonAsciiPattern() {
+        new SignatureMatcher.Builder().add(0, "\u6a21\u62df\u5668", false, null);
+    }
+}
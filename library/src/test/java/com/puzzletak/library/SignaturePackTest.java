@@ -0,0 +1,120 @@
+package com.puzzletak.library;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SignaturePackTest {
+
+    private static SignaturePack.Builder builder() {
+        return new SignaturePack.Builder(7)
+                .add(SignaturePack.SECTION_PACKAGES, "com.lbe.parallel", "Parallel Space")
+                .add(SignaturePack.SECTION_PACKAGES, "com.bly.dkplat", "Dual App")
+                .add(SignaturePack.SECTION_PACKAGES, "com.excelliance.dualaid", null)
+                .add(SignaturePack.SECTION_SU_PATHS, "/system/xbin/su", null)
+                .addProperty(ScoringModel.SIGNAL_HARDWARE, "vbox86", true, "Genymotion");
+    }
+
+    @Test
+    public void bytesRoundTrip() {
+        byte[] data = builder().toBytes();
+        // "PTSP", version 1.
+        assertEquals(0x50, data[0]);
+        assertEquals(0x50, data[3]);
+        SignaturePack pack = SignaturePack.fromBytes(data);
+        assertEquals(7, pack.revision);
+        assertEquals(3, pack.size(SignaturePack.SECTION_PACKAGES));
+        assertEquals(1, pack.size(SignaturePack.SECTION_SU_PATHS));
+        assertEquals(0, pack.size(SignaturePack.SECTION_LIBRARIES));
+    }
+
+    @Test
+    public void entriesAreSortedByPattern() {
+        SignaturePack pack = builder().build();
+        assertEquals("com.bly.dkplat", pack.getPattern(SignaturePack.SECTION_PACKAGES, 0));
+        assertEquals("Dual App", pack.getLabel(SignaturePack.SECTION_PACKAGES, 0));
+        assertEquals("com.excelliance.dualaid", pack.getPattern(SignaturePack.SECTION_PACKAGES, 1));
+        assertNull(pack.getLabel(SignaturePack.SECTION_PACKAGES, 1));
+        assertEquals("com.lbe.parallel", pack.getPattern(SignaturePack.SECTION_PACKAGES, 2));
+    }
+
+    @Test
+    public void containsIsExact() {
+        SignaturePack pack = builder().build();
+        assertTrue(pack.contains(SignaturePack.SECTION_PACKAGES, "com.lbe.parallel"));
+        assertFalse(pack.contains(SignaturePack.SECTION_PACKAGES, "com.lbe.parallel.pro"));
+        assertFalse(pack.contains(SignaturePack.SECTION_PACKAGES, "com.lbe"));
+        assertFalse(pack.contains(SignaturePack.SECTION_LIBRARIES, "com.lbe.parallel"));
+    }
+
+    @Test
+    public void findLooksForSubstrings() {
+        SignaturePack pack = builder().build();
+        assertEquals(0, pack.find(SignaturePack.SECTION_SU_PATHS, "ls -l /system/xbin/su"));
+        assertEquals(-1, pack.find(SignaturePack.SECTION_SU_PATHS, "/system/bin/su"));
+    }
+
+    @Test
+    public void matcherCarriesFieldsAndFlags() {
+        SignatureMatcher matcher = builder().build().matcher(SignaturePack.SECTION_PROPERTIES);
+        assertEquals(0, matcher.match(ScoringModel.SIGNAL_HARDWARE, "vbox86"));
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_HARDWARE, "vbox86p"));
+        assertEquals(-1, matcher.match(ScoringModel.SIGNAL_MODEL, "vbox86"));
+    }
+
+    @Test
+    public void rejectsCorruptPacks() {
+        byte[] data = builder().toBytes();
+        byte[] badMagic = data.clone();
+        badMagic[0] = 0;
+        for (byte[] corrupt : new byte[][]{badMagic, Arrays.copyOf(data, data.length - 1), new byte[4]}) {
+            try {
+                SignaturePack.fromBytes(corrupt);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsUnsortedSection() {
+        byte[] data = new SignaturePack.Builder(1)
+                .add(SignaturePack.SECTION_PACKAGES, "a.first", null)
+                .add(SignaturePack.SECTION_PACKAGES, "b.second", null)
+                .toBytes();
+        // Swap the two entry offsets of the packages index.
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int index = buffer.getInt(12 + 4);
+        int first = buffer.getInt(index);
+        buffer.putInt(index, buffer.getInt(index + 4));
+        buffer.putInt(index + 4, first);
+        try {
+            SignaturePack.fromBytes(data);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsPacksTheMatcherCannotCompile() {
+        byte[] data = new SignaturePack.Builder(1)
+                .add(SignaturePack.SECTION_LIBRARIES, "libfrida", null)
+                .toBytes();
+        // Make the pattern non-ASCII: entry header (4 bytes) right after the one-entry index.
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int index = buffer.getInt(12 + SignaturePack.SECTION_LIBRARIES * 8 + 4);
+        data[buffer.getInt(index) + 4 + 3] = (byte) 0xE9;
+        try {
+            SignaturePack.fromBytes(data);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
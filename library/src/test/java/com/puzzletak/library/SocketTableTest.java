@@ -0,0 +1,82 @@
+package com.puzzletak.library;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketTableTest {
+
+    private static final String TCP_HEADER = "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n";
+    private static final String TCP6_HEADER = "  sl  local_address                         remote_address                        st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode\n";
+
+    private static SocketTable parse(String... files) {
+        SocketTable table = new SocketTable();
+        for (String file : files) {
+            byte[] data = file.getBytes(Charset.forName("US-ASCII"));
+            table.parse(data, data.length);
+        }
+        return table;
+    }
+
+    @Test
+    public void parsesIpv4() {
+        SocketTable table = parse(TCP_HEADER
+                + "   0: 0100007F:69A2 00000000:0000 0A 00000000:00000000 00:00000000 00000000  2000        0 1 1 0 100 0 0 10 0\n"
+                + "   1: 00000000:1F90 00000000:0000 0A 00000000:00000000 00:00000000 00000000 10123        0 2 1 0 100 0 0 10 0\n"
+                + "   2: 0F02000A:B3C6 2EDA3AD8:01BB 01 00000000:00000000 00:00000000 00000000 10123        0 3 1 0 20 4 30 10 -1\n");
+        assertEquals(3, table.size());
+        assertEquals(0x7F000001, table.getAddress(0));
+        assertEquals(27042, table.getPort(0));
+        assertEquals(SocketTable.STATE_LISTEN, table.getState(0));
+        assertEquals(2000, table.getUid(0));
+        assertTrue(table.isLoopback(0));
+        assertTrue(table.isWildcard(1));
+        assertEquals(0x0A00020F, table.getAddress(2));
+        assertFalse(table.isLoopback(2));
+        assertFalse(table.isWildcard(2));
+        assertEquals(SocketTable.STATE_ESTABLISHED, table.getState(2));
+
+        assertTrue(table.isListening(27042));
+        assertFalse(table.isListening(46022));
+        assertArrayEquals(new int[]{27042, 8080}, table.getListeningLocalPorts(-1));
+        assertArrayEquals(new int[]{27042}, table.getListeningLocalPorts(10123));
+    }
+
+    @Test
+    public void parsesIpv6AndFoldsMappedAddresses() {
+        SocketTable table = parse(TCP6_HEADER
+                + "   0: 0000000000000000FFFF00000100007F:69A3 00000000000000000000000000000000:0000 0A 00000000:00000000 00:00000000 00000000  2000        0 1 1 0 100 0 0 10 0\n"
+                + "   1: 00000000000000000000000001000000:1388 00000000000000000000000000000000:0000 0A 00000000:00000000 00:00000000 00000000 10123        0 2 1 0 100 0 0 10 0\n"
+                + "   2: 00000000000000000000000000000000:1389 00000000000000000000000000000000:0000 0A 00000000:00000000 00:00000000 00000000 10123        0 3 1 0 100 0 0 10 0\n"
+                + "   3: 0000000000000000FFFF00000F02000A:138A 00000000000000000000000000000000:0000 0A 00000000:00000000 00:00000000 00000000 10123        0 4 1 0 100 0 0 10 0\n");
+        assertEquals(4, table.size());
+        // ::ffff:127.0.0.1
+        assertEquals(0x7F000001, table.getAddress(0));
+        assertTrue(table.isLoopback(0));
+        // ::1
+        assertEquals(0, table.getAddress(1));
+        assertTrue(table.isLoopback(1));
+        // ::
+        assertTrue(table.isWildcard(2));
+        // ::ffff:10.0.2.15
+        assertEquals(0x0A00020F, table.getAddress(3));
+        assertFalse(table.isLoopback(3));
+        assertArrayEquals(new int[]{27043, 5000, 5001}, table.getListeningLocalPorts(-1));
+    }
+
+    @Test
+    public void skipsMalformedLines() {
+        SocketTable table = parse(TCP_HEADER
+                + "   0: 0100007F:69A2\n"
+                + "   1: 0100007F:69G2 00000000:0000 0A 00000000:00000000 00:00000000 00000000  2000        0 1\n"
+                + "   2: 0100007F:69A2 00000000:0000 0A 00000000:00000000 00:00000000 00000000\n"
+                + "   3: 0100007F:69A2 00000000:0000 0A 00000000:00000000 00:00000000 00000000  2000        0 1");
+        assertEquals(1, table.size());
+        assertEquals(27042, table.getPort(0));
+    }
+}